@@ -19,41 +19,75 @@
  */
 package com.someguyssoftware.protectit;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import com.someguyssoftware.protectit.block.ProtectItBlocks;
 import com.someguyssoftware.protectit.block.entity.ProtectItBlockEntities;
+import com.someguyssoftware.protectit.capability.IProtectionContext;
+import com.someguyssoftware.protectit.capability.ProtectItCapabilities;
 import com.someguyssoftware.protectit.config.Config;
 import com.someguyssoftware.protectit.item.ProtectItItems;
 import com.someguyssoftware.protectit.network.ProtectItNetworking;
 import com.someguyssoftware.protectit.network.RegistryLoadMessageToClient;
 import com.someguyssoftware.protectit.persistence.ProtectItSavedData;
+import com.someguyssoftware.protectit.registry.PlayerDictionary;
 import com.someguyssoftware.protectit.registry.ProtectionRegistries;
+import com.someguyssoftware.protectit.registry.cache.ProtectionMemo;
+import com.someguyssoftware.protectit.registry.cache.TransferGuard;
 import com.someguyssoftware.protectit.setup.CommonSetup;
 
-import mod.gottsch.forge.gottschcore.spatial.Coords;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+
 import mod.gottsch.forge.gottschcore.world.WorldInfo;
 import net.minecraft.ChatFormatting;
+import net.minecraft.core.BlockPos;
 import net.minecraft.core.Direction;
 import net.minecraft.network.chat.Component;
+import net.minecraft.network.chat.MutableComponent;
+import net.minecraft.server.level.ServerLevel;
 import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.util.Mth;
 import net.minecraft.world.InteractionHand;
+import net.minecraft.world.entity.Entity;
+import net.minecraft.world.entity.MobCategory;
 import net.minecraft.world.entity.player.Player;
+import net.minecraft.world.entity.vehicle.MinecartHopper;
 import net.minecraft.world.level.Level;
 import net.minecraft.world.level.LevelAccessor;
+import net.minecraft.world.level.block.BaseFireBlock;
+import net.minecraft.world.level.block.Blocks;
+import net.minecraft.world.level.block.DispenserBlock;
+import net.minecraft.world.level.block.HopperBlock;
+import net.minecraft.world.level.block.piston.PistonStructureResolver;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.chunk.LevelChunk;
 import net.minecraftforge.common.MinecraftForge;
+import net.minecraftforge.event.TickEvent;
+import net.minecraftforge.event.entity.EntityJoinLevelEvent;
+import net.minecraftforge.event.entity.EntityLeaveLevelEvent;
 import net.minecraftforge.event.entity.living.LivingDestroyBlockEvent;
+import net.minecraftforge.event.entity.living.LivingSpawnEvent;
+import net.minecraftforge.event.entity.player.PermissionsChangedEvent;
 import net.minecraftforge.event.entity.player.PlayerEvent.PlayerLoggedInEvent;
 import net.minecraftforge.event.entity.player.PlayerInteractEvent;
 import net.minecraftforge.event.level.BlockEvent;
 import net.minecraftforge.event.level.BlockEvent.BlockToolModificationEvent;
 import net.minecraftforge.event.level.BlockEvent.EntityMultiPlaceEvent;
 import net.minecraftforge.event.level.BlockEvent.EntityPlaceEvent;
+import net.minecraftforge.event.level.ChunkEvent;
 import net.minecraftforge.event.level.ExplosionEvent;
 import net.minecraftforge.event.level.LevelEvent;
 import net.minecraftforge.event.level.PistonEvent;
 import net.minecraftforge.event.level.PistonEvent.PistonMoveType;
+import net.minecraftforge.event.server.ServerStoppedEvent;
+import net.minecraftforge.eventbus.api.Event.Result;
 import net.minecraftforge.eventbus.api.EventPriority;
 import net.minecraftforge.eventbus.api.IEventBus;
 import net.minecraftforge.eventbus.api.SubscribeEvent;
@@ -81,6 +115,15 @@ public class ProtectIt {
 	public static ProtectIt instance;
 	private static Config config;
 
+	// server thread only. cleared at the end of every server tick
+	private static final ProtectionMemo PROTECTION_MEMO = new ProtectionMemo(8);
+	// the number of ticks between registry journal flushes
+	private static final int JOURNAL_FLUSH_TICKS = 20;
+	// server thread only. fire to put out at the end of the tick, by level
+	private static final Map<LevelAccessor, LongOpenHashSet> FIRE_TO_REMOVE = new HashMap<>();
+	// the transfer guard of the level of the block registry, or null if no level is loaded
+	private static volatile TransferGuard transferGuard;
+
 	/**
 	 * 
 	 */
@@ -88,12 +131,12 @@ public class ProtectIt {
 		ProtectIt.instance = this;
 		ProtectIt.config = new Config();
 
-		ModLoadingContext.get().registerConfig(ModConfig.Type.CLIENT, Config.CLIENT_CONFIG);
 		ModLoadingContext.get().registerConfig(ModConfig.Type.COMMON, Config.COMMON_CONFIG);
 		ModLoadingContext.get().registerConfig(ModConfig.Type.SERVER, Config.SERVER_CONFIG);
 
 		// Register ourselves for server and other game events we are interested in
 		MinecraftForge.EVENT_BUS.register(this);
+		MinecraftForge.EVENT_BUS.addGenericListener(Entity.class, ProtectItCapabilities::attach);
 
 		// Register the setup method for modloading
 		IEventBus eventBus = FMLJavaModLoadingContext.get().getModEventBus();
@@ -105,6 +148,7 @@ public class ProtectIt {
 		
 		// regular register
 		eventBus.addListener(CommonSetup::common);
+		eventBus.addListener(ProtectItCapabilities::register);
 	}
 
 	/**
@@ -113,9 +157,97 @@ public class ProtectIt {
 	 * @param player
 	 */
 	private void sendProtectedMessage(LevelAccessor world, Player player) {
-		if (world.isClientSide() && Config.GUI.enableProtectionMessage.get()) {
-			player.sendSystemMessage((Component.translatable("message.protectit.block_protected").withStyle(new ChatFormatting[]{ChatFormatting.GRAY, ChatFormatting.ITALIC})));
+		if (world.isClientSide() || !Config.MESSAGES.enableProtectionMessage.get()) {
+			return;
+		}
+		IProtectionContext context = ProtectItCapabilities.getProtectionContext(player);
+		if (context == null) {
+			return;
+		}
+		// at most one message per interval, so sustained denials don't flood the player's chat
+		int suppressed = context.recordDenial(player.getLevel().getGameTime(), Config.MESSAGES.protectionMessageInterval.get());
+		if (suppressed < 0) {
+			return;
+		}
+		MutableComponent message = (suppressed > 0 && Config.MESSAGES.showSuppressedCount.get())
+				? Component.translatable("message.protectit.block_protected.suppressed", suppressed)
+				: Component.translatable("message.protectit.block_protected");
+		player.displayClientMessage(message.withStyle(new ChatFormatting[]{ChatFormatting.GRAY, ChatFormatting.ITALIC}), Config.MESSAGES.useActionBar.get());
+	}
+
+	/**
+	 * Whether the block is protected against the player. Ops bypass protection.
+	 * Server players use their cached protection context.
+	 * @param player
+	 * @param pos
+	 * @return
+	 */
+	private static boolean isProtectedAgainst(Player player, BlockPos pos) {
+		IProtectionContext context = ProtectItCapabilities.getProtectionContext(player);
+		if (context != null) {
+			if (context.isOpBypass(player)) {
+				return false;
+			}
+			// collapse the repeated checks of the same block by the same player within a tick
+			int playerId = context.getPlayerId(player);
+			long packedPos = pos.asLong();
+			long epoch = ProtectionRegistries.block().getEpoch();
+			int memo = PROTECTION_MEMO.get(playerId, packedPos, epoch);
+			if (memo != ProtectionMemo.MISS) {
+				return memo == ProtectionMemo.PROTECTED;
+			}
+			boolean isProtected = context.isProtectedAgainst(player, pos.getX(), pos.getY(), pos.getZ());
+			PROTECTION_MEMO.put(playerId, packedPos, epoch, isProtected);
+			return isProtected;
+		}
+		return !player.hasPermissions(Config.GENERAL.opsPermissionLevel.get())
+				&& ProtectionRegistries.block().isProtectedAgainst(pos.getX(), pos.getY(), pos.getZ(), player.getUUID());
+	}
+
+	/**
+	 * Whether the block would pull items from, or push items into, a block in another protection domain
+	 * that is protected against the player. Denies the placement up front. Blocks that come to cross
+	 * a border later, ie. when a claim is added, are disabled by the {@link TransferGuard}.
+	 * @param player
+	 * @param state the placed block
+	 * @param pos
+	 * @return
+	 */
+	private static boolean isTransferProtected(Player player, BlockState state, BlockPos pos) {
+		if (state.getBlock() instanceof HopperBlock) {
+			return isTransferProtected(player, pos, pos.above())
+					|| isTransferProtected(player, pos, pos.relative(state.getValue(HopperBlock.FACING)));
+		}
+		if (state.getBlock() instanceof DispenserBlock) {
+			// includes droppers
+			return isTransferProtected(player, pos, pos.relative(state.getValue(DispenserBlock.FACING)));
 		}
+		return false;
+	}
+
+	private static boolean isTransferProtected(Player player, BlockPos pos, BlockPos target) {
+		return !ProtectionRegistries.block().sameProtectionDomain(pos, target) && isProtectedAgainst(player, target);
+	}
+
+	/**
+	 * Whether the block is protected against non-player entities.
+	 * @param level
+	 * @param pos
+	 * @return
+	 */
+	private static boolean isProtected(LevelAccessor level, BlockPos pos) {
+		if (level.isClientSide()) {
+			return ProtectionRegistries.block().isProtected(pos.getX(), pos.getY(), pos.getZ());
+		}
+		long packedPos = pos.asLong();
+		long epoch = ProtectionRegistries.block().getEpoch();
+		int memo = PROTECTION_MEMO.get(PlayerDictionary.NO_ID, packedPos, epoch);
+		if (memo != ProtectionMemo.MISS) {
+			return memo == ProtectionMemo.PROTECTED;
+		}
+		boolean isProtected = ProtectionRegistries.block().isProtected(pos.getX(), pos.getY(), pos.getZ());
+		PROTECTION_MEMO.put(PlayerDictionary.NO_ID, packedPos, epoch, isProtected);
+		return isProtected;
 	}
 
 	@SubscribeEvent(priority = EventPriority.HIGH)
@@ -125,8 +257,10 @@ public class ProtectIt {
 			ProtectIt.LOGGER.debug("In world load event for dimension {}", WorldInfo.getDimension(world).toString());
 			if (WorldInfo.isSurfaceWorld(world)) {
 				LOGGER.debug("loading Protect It data...");
-				ProtectionRegistries.block().clear();
+				ProtectionRegistries.initBlockRegistry();
 				ProtectItSavedData.get(world);
+				transferGuard = new TransferGuard((ServerLevel) world);
+				ProtectionRegistries.block().addDomainListener(transferGuard);
 			}
 		}
 	}
@@ -149,13 +283,11 @@ public class ProtectIt {
 	public void onBlockBreak(final BlockEvent.BreakEvent event) {
 //		LOGGER.debug("attempt to break block by player -> {} @ {}", event.getPlayer().getDisplayName().getString(), new Coords(event.getPos()).toShortString());
 		// prevent protected blocks from breaking
-		if (!Config.PROTECTION.enableBlockBreakEvent.get()
-				|| event.getPlayer().hasPermissions(Config.GENERAL.opsPermissionLevel.get())) {
+		if (!Config.PROTECTION.enableBlockBreakEvent.get()) {
 			return;
 		}
 		
-//		LOGGER.debug("block break is protectedagainst -> {}", ProtectionRegistries.block().isProtectedAgainst(new Coords(event.getPos()), event.getPlayer().getStringUUID()));
-		if (ProtectionRegistries.block().isProtectedAgainst(new Coords(event.getPos()), event.getPlayer().getStringUUID())) {
+		if (isProtectedAgainst(event.getPlayer(), event.getPos())) {
 			event.setCanceled(true);
 //			LOGGER.debug("denied breakage -> {} @ {}", event.getPlayer().getDisplayName().getString(), new Coords(event.getPos()).toShortString());
 			if (!event.getLevel().isClientSide()) {
@@ -166,14 +298,14 @@ public class ProtectIt {
 
 	@SubscribeEvent
 	public void onBlockPlace(final EntityPlaceEvent event) {
-		if (!Config.PROTECTION.enableEntityPlaceEvent.get()
-				|| event.getEntity().hasPermissions(Config.GENERAL.opsPermissionLevel.get()) ) {
+		if (!Config.PROTECTION.enableEntityPlaceEvent.get()) {
 			return;
 		}
 
 		// prevent protected blocks from placing
 		if (event.getEntity() instanceof Player) {
-			if (ProtectionRegistries.block().isProtectedAgainst(new Coords(event.getPos()), event.getEntity().getStringUUID())) {
+			if (isProtectedAgainst((Player) event.getEntity(), event.getPos())
+					|| (Config.PROTECTION.enableItemTransferEvent.get() && isTransferProtected((Player) event.getEntity(), event.getPlacedBlock(), event.getPos()))) {
 				event.setCanceled(true);
 //				LOGGER.debug("denied block place -> {} @ {}", event.getEntity().getDisplayName().getString(), new Coords(event.getPos()).toShortString());
 				if (!event.getLevel().isClientSide()) {
@@ -181,21 +313,27 @@ public class ProtectIt {
 				}
 			}
 		}
-		else if (ProtectionRegistries.block().isProtected(new Coords(event.getPos()))) {
+		else if (isProtected(event.getLevel(), event.getPos())) {
 			event.setCanceled(true);
 		}
+
+		TransferGuard guard = transferGuard;
+		if (!event.isCanceled() && guard != null && event.getLevel() == guard.getLevel()
+				&& Config.PROTECTION.enableItemTransferEvent.get()
+				&& (event.getPlacedBlock().getBlock() instanceof HopperBlock || event.getPlacedBlock().getBlock() instanceof DispenserBlock)) {
+			guard.onPlace(event.getPos());
+		}
 	}
 
 	@SubscribeEvent
 	public void onMutliBlockPlace(final EntityMultiPlaceEvent event) {
-		if (!Config.PROTECTION.enableEntityMultiPlaceEvent.get()
-				|| event.getEntity().hasPermissions(Config.GENERAL.opsPermissionLevel.get()) ) {
+		if (!Config.PROTECTION.enableEntityMultiPlaceEvent.get()) {
 			return;
 		}
 
 		// prevent protected blocks from breaking
 		if (event.getEntity() instanceof Player) {
-			if (ProtectionRegistries.block().isProtectedAgainst(new Coords(event.getPos()), event.getEntity().getStringUUID())) {
+			if (isProtectedAgainst((Player) event.getEntity(), event.getPos())) {
 				event.setCanceled(true);
 				if (!event.getLevel().isClientSide()) {
 //					LOGGER.debug("denied multi-block place -> {} @ {}", event.getEntity().getDisplayName().getString(), new Coords(event.getPos()).toShortString());
@@ -203,19 +341,18 @@ public class ProtectIt {
 				}
 			}
 		}
-		else if (ProtectionRegistries.block().isProtected(new Coords(event.getPos()))) {
+		else if (isProtected(event.getLevel(), event.getPos())) {
 			event.setCanceled(true);
 		}		
 	}
 
 	@SubscribeEvent
 	public void onToolInteract(final BlockToolModificationEvent event) {
-		if (!Config.PROTECTION.enableBlockToolInteractEvent.get()
-				|| event.getPlayer().hasPermissions(Config.GENERAL.opsPermissionLevel.get())) {
+		if (!Config.PROTECTION.enableBlockToolInteractEvent.get() || event.getPlayer() == null) {
 			return;
 		}
 
-		if (ProtectionRegistries.block().isProtectedAgainst(new Coords(event.getPos()), event.getPlayer().getStringUUID())) {
+		if (isProtectedAgainst(event.getPlayer(), event.getPos())) {
 			event.setCanceled(true);
 			if (!event.getLevel().isClientSide()) {
 				sendProtectedMessage(event.getLevel(), event.getPlayer());
@@ -225,8 +362,7 @@ public class ProtectIt {
 
 	@SubscribeEvent
 	public void onPlayerInteract(final PlayerInteractEvent.RightClickBlock event) {
-		if (!Config.PROTECTION.enableRightClickBlockEvent.get()
-				|| event.getEntity().hasPermissions(Config.GENERAL.opsPermissionLevel.get())) {
+		if (!Config.PROTECTION.enableRightClickBlockEvent.get()) {
 			return;
 		}
 
@@ -234,7 +370,7 @@ public class ProtectIt {
 		if (event.getEntity() instanceof Player) {
 
 			// get the item in the player's hand
-			if (ProtectionRegistries.block().isProtectedAgainst(new Coords(event.getPos()), event.getEntity().getStringUUID())) {
+			if (isProtectedAgainst(event.getEntity(), event.getPos())) {
 				event.setCanceled(true);
 //				LOGGER.debug("denied right click -> {} @ {} w/ hand -> {}", event.getPlayer().getDisplayName().getString(), new Coords(event.getPos()).toShortString(), event.getHand().toString());
 				if (event.getHand() == InteractionHand.MAIN_HAND) { // reduces to only 1 message per action
@@ -245,16 +381,79 @@ public class ProtectIt {
 			}
 			// TODO check if Claim Lectern and if one already exists in claim?
 		}
-		else if (ProtectionRegistries.block().isProtected(new Coords(event.getPos()))) {
+		else if (isProtected(event.getLevel(), event.getPos())) {
 			event.setCanceled(true);
 		}
 	}
 
+	@SubscribeEvent
+	public void onServerTick(final TickEvent.ServerTickEvent event) {
+		if (event.phase == TickEvent.Phase.END) {
+			if (!FIRE_TO_REMOVE.isEmpty()) {
+				removeFire();
+			}
+			PROTECTION_MEMO.clear();
+			if (event.getServer().getTickCount() % JOURNAL_FLUSH_TICKS == 0) {
+				ProtectItSavedData.get(event.getServer().overworld()).flushJournal();
+			}
+		}
+	}
+
+	@SubscribeEvent
+	public void onServerStopped(final ServerStoppedEvent event) {
+		// after the final world save
+		ProtectItSavedData.get(event.getServer().overworld()).closeJournal();
+		transferGuard = null;
+	}
+
+	@SubscribeEvent
+	public void onLevelTick(final TickEvent.LevelTickEvent event) {
+		TransferGuard guard = transferGuard;
+		// before the level's scheduled ticks, block entities and entities run
+		if (event.phase == TickEvent.Phase.START && guard != null && event.level == guard.getLevel()
+				&& Config.PROTECTION.enableItemTransferEvent.get()) {
+			guard.tick();
+		}
+	}
+
+	@SubscribeEvent
+	public void onChunkLoad(final ChunkEvent.Load event) {
+		TransferGuard guard = transferGuard;
+		if (guard != null && event.getLevel() == guard.getLevel() && event.getChunk() instanceof LevelChunk
+				&& Config.PROTECTION.enableItemTransferEvent.get()) {
+			guard.onChunkLoad(event.getChunk().getPos());
+		}
+	}
+
+	@SubscribeEvent
+	public void onEntityJoinLevel(final EntityJoinLevelEvent event) {
+		TransferGuard guard = transferGuard;
+		if (guard != null && event.getLevel() == guard.getLevel() && event.getEntity() instanceof MinecartHopper) {
+			guard.addCart((MinecartHopper) event.getEntity());
+		}
+	}
+
+	@SubscribeEvent
+	public void onEntityLeaveLevel(final EntityLeaveLevelEvent event) {
+		TransferGuard guard = transferGuard;
+		if (guard != null && event.getLevel() == guard.getLevel() && event.getEntity() instanceof MinecartHopper) {
+			guard.removeCart((MinecartHopper) event.getEntity());
+		}
+	}
+
+	@SubscribeEvent
+	public void onPermissionsChanged(final PermissionsChangedEvent event) {
+		IProtectionContext context = ProtectItCapabilities.getProtectionContext(event.getEntity());
+		if (context != null) {
+			context.invalidatePermissions();
+		}
+	}
+
 	@SubscribeEvent
 	public void onLivingDestroyBlock(final LivingDestroyBlockEvent event) {
 		// prevent protected blocks from breaking by mob action
 		if (Config.PROTECTION.enableLivingDestroyBlockEvent.get()
-				&& ProtectionRegistries.block().isProtected(new Coords(event.getPos()))) {
+				&& isProtected(event.getLevel(), event.getPos())) {
 			event.setCanceled(true);
 		}
 	}
@@ -265,64 +464,143 @@ public class ProtectIt {
 			return;
 		}
 
-		if (event.getDirection() == Direction.UP || event.getDirection() == Direction.DOWN) {
+		// a non-sticky piston does not move any blocks when retracting
+		if (event.getPistonMoveType() == PistonMoveType.RETRACT && !event.getState().is(Blocks.STICKY_PISTON)) {
 			return;
 		}
-		// TODO this needs to change to be, just continue, so that the movement of blocks 
-		// can be checked against an adjacent claim.
-		// check if piston itself is inside protected area - if so, exit ie. allow movement
-		if (ProtectionRegistries.block().isProtected(new Coords(event.getPos()))) {
+
+		// resolve the set of blocks the piston moves or destroys, in any direction
+		PistonStructureResolver resolver = event.getStructureHelper();
+		if (resolver == null || !resolver.resolve()) {
+			// vanilla will not move anything
 			return;
 		}
-
+		Direction pushDirection = resolver.getPushDirection();
+		List<BlockPos> toPush = resolver.getToPush();
+		List<BlockPos> positions = new ArrayList<>(toPush.size() * 2 + resolver.getToDestroy().size() + 1);
 		if (event.getPistonMoveType() == PistonMoveType.EXTEND) {
-			for (int count = 1; count <=12; count++) {
-				int xOffset = 0;
-				int zOffset = 0;
-				int xPush = 0;				
-				int zPush = 0;
-				switch(event.getDirection()) {
-				default:
-				case NORTH:
-					zOffset = -count;
-					zPush = -1;
-					break;
-				case SOUTH:
-					zOffset = count;
-					zPush = +1;
-					break;
-				case WEST:
-					xOffset = -count;
-					xPush = -1;
-					break;
-				case EAST:
-					xOffset = count;
-					xPush = 1;
-					break;
-				}
+			positions.add(event.getPos().relative(event.getDirection()));
+		}
+		for (BlockPos pos : toPush) {
+			positions.add(pos);
+			positions.add(pos.relative(pushDirection));
+		}
+		positions.addAll(resolver.getToDestroy());
+
+		// check the source and destination of every moved block against the piston's claim
+		if (ProtectionRegistries.block().isProtectedFrom(event.getPos(), positions)) {
+			event.setCanceled(true);
+		}
+	}
+
+	@SubscribeEvent
+	public void onCheckSpawn(final LivingSpawnEvent.CheckSpawn event) {
+		// spawners are placed by players, so only natural spawns are denied
+		if (Config.PROTECTION.enableMobSpawnEvent.get() && event.getSpawner() == null
+				&& event.getEntity().getType().getCategory() == MobCategory.MONSTER
+				&& ProtectionRegistries.block().isMobSpawningDenied(Mth.floor(event.getX()), Mth.floor(event.getY()), Mth.floor(event.getZ()))) {
+			event.setResult(Result.DENY);
+		}
+	}
+
+	@SubscribeEvent
+	public void onFluidPlace(final BlockEvent.FluidPlaceBlockEvent event) {
+		// prevent fluids from placing blocks (fire, cobblestone, etc.) across a claim border
+		if (Config.PROTECTION.enableFluidPlaceEvent.get()
+				&& !ProtectionRegistries.block().sameProtectionDomain(event.getLiquidPos(), event.getPos())
+				&& isProtected(event.getLevel(), event.getPos())) {
+			event.setCanceled(true);
+		}
+	}
+
+	/**
+	 * Fire spread has no event of its own, so new fire is caught when it notifies its neighbors.
+	 * Fire burns its neighbors on its own ticks, replacing a flammable block with fire or destroying it,
+	 * so new fire is put out before its first tick if it is next to a flammable block in a claim of another
+	 * protection domain. Fire in a claim is also put out if all the fire it could have spread from is in another protection domain.
+	 */
+	@SubscribeEvent
+	public void onFireSpread(final BlockEvent.NeighborNotifyEvent event) {
+		if (!Config.PROTECTION.enableFireSpreadEvent.get() || event.getLevel().isClientSide()
+				|| !(event.getState().getBlock() instanceof BaseFireBlock)) {
+			return;
+		}
+		BlockPos pos = event.getPos();
+		if (isBurningProtected(event.getLevel(), pos) || isSpreadIntoProtected(event.getLevel(), pos)) {
+			event.setCanceled(true);
+			// removing the fire now would notify the neighbors again while this event is still running
+			FIRE_TO_REMOVE.computeIfAbsent(event.getLevel(), level -> new LongOpenHashSet()).add(pos.asLong());
+		}
+	}
 
-				if (event.getLevel().getBlockState(event.getPos().offset(xOffset, 0, zOffset)).getMaterial().isSolid()) {
-					// prevent protected blocks from breaking
-					if (ProtectionRegistries.block().isProtected(new Coords(event.getPos().offset(xOffset, 0, zOffset))) || 
-							ProtectionRegistries.block().isProtected(new Coords(event.getPos().offset(xOffset + xPush, 0, zOffset + zPush)))) {
-						event.setCanceled(true);
-						return;
+	/**
+	 * Whether the fire is next to a flammable block that is protected and in another protection domain.
+	 * These are the blocks that vanilla fire burns.
+	 */
+	private static boolean isBurningProtected(LevelAccessor level, BlockPos pos) {
+		BlockPos.MutableBlockPos neighbor = new BlockPos.MutableBlockPos();
+		for (Direction direction : Direction.values()) {
+			neighbor.setWithOffset(pos, direction);
+			if (isProtected(level, neighbor)
+					&& level.getBlockState(neighbor).isFlammable(level, neighbor, direction.getOpposite())
+					&& !ProtectionRegistries.block().sameProtectionDomain(pos, neighbor)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Whether the fire is in a claim, and all the fire it could have spread from is in another protection domain.
+	 */
+	private static boolean isSpreadIntoProtected(LevelAccessor level, BlockPos pos) {
+		if (!isProtected(level, pos)) {
+			return false;
+		}
+		// fire spreads up to 1 block horizontally, 1 block down and 4 blocks up
+		boolean isSpread = false;
+		BlockPos.MutableBlockPos source = new BlockPos.MutableBlockPos();
+		for (int x = -1; x <= 1; x++) {
+			for (int z = -1; z <= 1; z++) {
+				for (int y = -4; y <= 1; y++) {
+					if (x == 0 && y == 0 && z == 0) {
+						continue;
+					}
+					source.setWithOffset(pos, x, y, z);
+					if (level.getBlockState(source).getBlock() instanceof BaseFireBlock) {
+						if (ProtectionRegistries.block().sameProtectionDomain(source, pos)) {
+							return false;
+						}
+						isSpread = true;
 					}
-				}
-				else {
-					return;
 				}
 			}
 		}
+		return isSpread;
+	}
+
+	/**
+	 * Put out the fire caught during the tick.
+	 */
+	private static void removeFire() {
+		FIRE_TO_REMOVE.forEach((level, positions) -> {
+			BlockPos.MutableBlockPos pos = new BlockPos.MutableBlockPos();
+			LongIterator iterator = positions.iterator();
+			while (iterator.hasNext()) {
+				pos.set(iterator.nextLong());
+				if (level.getBlockState(pos).getBlock() instanceof BaseFireBlock) {
+					level.removeBlock(pos, false);
+				}
+			}
+		});
+		FIRE_TO_REMOVE.clear();
 	}
 
 	@SubscribeEvent
 	public void onExplosion(final ExplosionEvent.Detonate event) {
 		// remove any affected blocks that are protected
-		event.getAffectedBlocks().removeIf(block -> {
-			// prevent protected blocks from breaking
-			return Config.PROTECTION.enableExplosionDetonateEvent.get()
-					&& ProtectionRegistries.block().isProtected(new Coords(block.getX(), block.getY(), block.getZ()));
-		});
+		if (Config.PROTECTION.enableExplosionDetonateEvent.get()) {
+			ProtectionRegistries.block().removeProtected(event.getAffectedBlocks());
+		}
 	}
 }
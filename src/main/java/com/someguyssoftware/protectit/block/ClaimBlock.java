@@ -197,9 +197,9 @@ public class ClaimBlock extends Block implements EntityBlock {
 				
 				ProtectIt.LOGGER.debug("should've added -> {} {}", box, player.getStringUUID());
 				ProtectItSavedData savedData = ProtectItSavedData.get(level);
-				// mark data as dirty
+				// journal the new claim
 				if (savedData != null) {
-					savedData.setDirty();
+					savedData.claimChanged(claim);
 				}
 
 				if(((ServerLevel)level).getServer().isDedicatedServer()) {
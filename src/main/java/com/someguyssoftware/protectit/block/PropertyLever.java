@@ -151,7 +151,7 @@ public class PropertyLever extends LeverBlock implements EntityBlock {
 		if (blockEntity instanceof PropertyLeverBlockEntity) {
 			Property property = ProtectionRegistries.block().getClaimByCoords(((PropertyLeverBlockEntity)blockEntity).getPropertyCoords());
 			if (property != null && !player.getStringUUID().equalsIgnoreCase(property.getOwner().getUuid()) &&
-					property.getWhitelist().stream().noneMatch(p -> p.getUuid().equals(player.getStringUUID()))) {
+					!property.isWhitelisted(player.getUUID())) {
 				return InteractionResult.FAIL;
 			}
 			
@@ -131,9 +131,9 @@ public class RemoveClaimBlock extends ClaimBlock {
 			ProtectIt.LOGGER.debug("should've removed -> {} {}", claim, player.getStringUUID());
 
 			ProtectItSavedData savedData = ProtectItSavedData.get(world);
-			// mark data as dirty
+			// journal the removal
 			if (savedData != null) {
-				savedData.setDirty();
+				savedData.claimsRemoved(claim.getBox().getMinCoords(), claim.getBox().getMinCoords(), null);
 			}
 
 			if(((ServerLevel)world).getServer().isDedicatedServer()) {
@@ -0,0 +1,68 @@
+/*
+ * This file is part of  Protect It.
+ * Copyright (c) 2023 Mark Gottschling (gottsch)
+ *
+ * All rights reserved.
+ *
+ * Protect It is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Protect It is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Protect It.  If not, see <http://www.gnu.org/licenses/lgpl>.
+ */
+package com.someguyssoftware.protectit.capability;
+
+import net.minecraft.world.entity.player.Player;
+
+/**
+ * Server-side, per-player cache of the values needed to answer protection checks.
+ *
+ * @author Mark Gottschling on Mar 8, 2023
+ *
+ */
+public interface IProtectionContext {
+
+	/**
+	 * 
+	 * @param player
+	 * @return the player's dictionary id
+	 */
+	int getPlayerId(Player player);
+
+	/**
+	 * Whether the player has the ops permission level to bypass protection.
+	 * @param player
+	 * @return
+	 */
+	boolean isOpBypass(Player player);
+
+	/**
+	 * Whether the block is protected against the player. Does not check the ops bypass.
+	 * @param player
+	 * @param x
+	 * @param y
+	 * @param z
+	 * @return
+	 */
+	boolean isProtectedAgainst(Player player, int x, int y, int z);
+
+	/**
+	 * Forget the resolved ops bypass, ie. when the player's permissions change.
+	 */
+	void invalidatePermissions();
+
+	/**
+	 * Record a protection denial and decide whether the player should be messaged.
+	 * @param gameTime the current game time
+	 * @param interval the min. number of ticks between messages
+	 * @return the number of denials suppressed since the last message, or -1 if this denial should not be messaged
+	 */
+	int recordDenial(long gameTime, int interval);
+}
@@ -0,0 +1,70 @@
+/*
+ * This file is part of  Protect It.
+ * Copyright (c) 2023 Mark Gottschling (gottsch)
+ *
+ * All rights reserved.
+ *
+ * Protect It is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Protect It is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Protect It.  If not, see <http://www.gnu.org/licenses/lgpl>.
+ */
+package com.someguyssoftware.protectit.capability;
+
+import com.someguyssoftware.protectit.ProtectIt;
+
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.entity.Entity;
+import net.minecraft.world.entity.player.Player;
+import net.minecraftforge.common.capabilities.Capability;
+import net.minecraftforge.common.capabilities.CapabilityManager;
+import net.minecraftforge.common.capabilities.CapabilityToken;
+import net.minecraftforge.common.capabilities.RegisterCapabilitiesEvent;
+import net.minecraftforge.event.AttachCapabilitiesEvent;
+
+/**
+ * 
+ * @author Mark Gottschling on Mar 8, 2023
+ *
+ */
+public class ProtectItCapabilities {
+	public static final ResourceLocation PROTECTION_CONTEXT_ID = new ResourceLocation(ProtectIt.MODID, "protection_context");
+
+	public static final Capability<IProtectionContext> PROTECTION_CONTEXT = CapabilityManager.get(new CapabilityToken<>(){});
+
+	/**
+	 * 
+	 * @param event
+	 */
+	public static void register(final RegisterCapabilitiesEvent event) {
+		event.register(IProtectionContext.class);
+	}
+
+	/**
+	 * Attach the protection context to server players only.
+	 * @param event
+	 */
+	public static void attach(final AttachCapabilitiesEvent<Entity> event) {
+		if (event.getObject() instanceof ServerPlayer) {
+			event.addCapability(PROTECTION_CONTEXT_ID, new ProtectionContextProvider());
+		}
+	}
+
+	/**
+	 * 
+	 * @param player
+	 * @return the player's protection context, or null if the player is not a server player
+	 */
+	public static IProtectionContext getProtectionContext(Player player) {
+		return player.getCapability(PROTECTION_CONTEXT).orElse(null);
+	}
+}
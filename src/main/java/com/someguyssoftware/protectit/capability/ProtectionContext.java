@@ -0,0 +1,122 @@
+/*
+ * This file is part of  Protect It.
+ * Copyright (c) 2023 Mark Gottschling (gottsch)
+ *
+ * All rights reserved.
+ *
+ * Protect It is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Protect It is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Protect It.  If not, see <http://www.gnu.org/licenses/lgpl>.
+ */
+package com.someguyssoftware.protectit.capability;
+
+import com.someguyssoftware.protectit.claim.Property;
+import com.someguyssoftware.protectit.config.Config;
+import com.someguyssoftware.protectit.registry.IBlockProtectionRegistry;
+import com.someguyssoftware.protectit.registry.PlayerDictionary;
+import com.someguyssoftware.protectit.registry.ProtectionRegistries;
+
+import net.minecraft.world.entity.player.Player;
+
+/**
+ * Caches the player's interned id, their resolved ops bypass, and the last claim they
+ * interacted with. The last claim is tested first on the next check, so a player building
+ * inside one claim costs a bounds test instead of a registry lookup.
+ * The last claim is only used while the registry epoch is unchanged.
+ * Also coalesces the protection messages sent to the player.
+ *
+ * @author Mark Gottschling on Mar 8, 2023
+ *
+ */
+public class ProtectionContext implements IProtectionContext {
+	// the permission level the ops bypass was resolved with, or -1 if unresolved
+	private static final int UNRESOLVED = -1;
+
+	private int playerId = PlayerDictionary.NO_ID;
+	private int permissionLevel = UNRESOLVED;
+	private boolean opBypass;
+
+	private Property lastClaim;
+	private long lastEpoch;
+	private int minX, minY, minZ, maxX, maxY, maxZ;
+
+	// protection message coalescing
+	private long lastMessageTime = Long.MIN_VALUE;
+	private int suppressedDenials;
+
+	@Override
+	public int getPlayerId(Player player) {
+		// resolved lazily, as the player's uuid is not set when capabilities are attached
+		if (playerId == PlayerDictionary.NO_ID) {
+			playerId = ProtectionRegistries.players().getId(player.getStringUUID());
+		}
+		return playerId;
+	}
+
+	@Override
+	public boolean isOpBypass(Player player) {
+		int level = Config.GENERAL.opsPermissionLevel.get();
+		if (permissionLevel != level) {
+			opBypass = player.hasPermissions(level);
+			permissionLevel = level;
+		}
+		return opBypass;
+	}
+
+	@Override
+	public boolean isProtectedAgainst(Player player, int x, int y, int z) {
+		IBlockProtectionRegistry registry = ProtectionRegistries.block();
+		long epoch = registry.getEpoch();
+
+		Property claim;
+		if (lastClaim != null && lastEpoch == epoch
+				&& x >= minX && x <= maxX && y >= minY && y <= maxY && z >= minZ && z <= maxZ) {
+			claim = lastClaim;
+		}
+		else {
+			claim = registry.getClaim(x, y, z);
+			if (claim == null) {
+				return false;
+			}
+			setLastClaim(claim, epoch);
+		}
+		return !claim.hasAccess(getPlayerId(player));
+	}
+
+	private void setLastClaim(Property claim, long epoch) {
+		lastClaim = claim;
+		lastEpoch = epoch;
+		minX = claim.getBox().getMinCoords().getX();
+		minY = claim.getBox().getMinCoords().getY();
+		minZ = claim.getBox().getMinCoords().getZ();
+		maxX = claim.getBox().getMaxCoords().getX();
+		maxY = claim.getBox().getMaxCoords().getY();
+		maxZ = claim.getBox().getMaxCoords().getZ();
+	}
+
+	@Override
+	public void invalidatePermissions() {
+		permissionLevel = UNRESOLVED;
+	}
+
+	@Override
+	public int recordDenial(long gameTime, int interval) {
+		if (lastMessageTime != Long.MIN_VALUE && gameTime - lastMessageTime < interval && gameTime >= lastMessageTime) {
+			suppressedDenials++;
+			return -1;
+		}
+		int suppressed = suppressedDenials;
+		lastMessageTime = gameTime;
+		suppressedDenials = 0;
+		return suppressed;
+	}
+}
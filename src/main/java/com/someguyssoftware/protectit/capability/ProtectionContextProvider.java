@@ -0,0 +1,41 @@
+/*
+ * This file is part of  Protect It.
+ * Copyright (c) 2023 Mark Gottschling (gottsch)
+ *
+ * All rights reserved.
+ *
+ * Protect It is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Protect It is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Protect It.  If not, see <http://www.gnu.org/licenses/lgpl>.
+ */
+package com.someguyssoftware.protectit.capability;
+
+import net.minecraft.core.Direction;
+import net.minecraftforge.common.capabilities.Capability;
+import net.minecraftforge.common.capabilities.ICapabilityProvider;
+import net.minecraftforge.common.util.LazyOptional;
+
+/**
+ * Not serializable, as the context is only a cache.
+ *
+ * @author Mark Gottschling on Mar 8, 2023
+ *
+ */
+public class ProtectionContextProvider implements ICapabilityProvider {
+	private final IProtectionContext context = new ProtectionContext();
+	private final LazyOptional<IProtectionContext> optional = LazyOptional.of(() -> context);
+
+	@Override
+	public <T> LazyOptional<T> getCapability(Capability<T> capability, Direction side) {
+		return ProtectItCapabilities.PROTECTION_CONTEXT.orEmpty(capability, optional);
+	}
+}
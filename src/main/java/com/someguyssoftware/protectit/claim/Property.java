@@ -20,11 +20,16 @@
 package com.someguyssoftware.protectit.claim;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
+import java.util.function.Predicate;
 
-import com.someguyssoftware.protectit.ProtectIt;
 import com.someguyssoftware.protectit.registry.PlayerData;
+import com.someguyssoftware.protectit.registry.PlayerDictionary;
+import com.someguyssoftware.protectit.registry.ProtectionRegistries;
+
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
 
 import mod.gottsch.forge.gottschcore.spatial.Box;
 import mod.gottsch.forge.gottschcore.spatial.Coords;
@@ -48,13 +53,20 @@ public class Property {
 	public static final String COORDS_KEY = "coords";
 	public static final String BOX_KEY = "box";
 	public static final String WHITELIST_KEY = "whitelist";
+	public static final String MOB_SPAWNING_KEY = "mobSpawning";
 	
 	private String name;
 	private UUID uuid;
 	private PlayerData owner;
-	private List<PlayerData> whitelist;
+	// ordered whitelist, for display
+	private final List<PlayerData> whitelist = new ArrayList<>();
+	// whitelisted player ids, for constant-time membership checks.
+	// replaced, not modified, as it is read from the client render thread.
+	private volatile IntOpenHashSet whitelistIds = new IntOpenHashSet();
 	private ICoords coords;
 	private Box box;
+	// whether hostile mobs can spawn naturally in the property
+	private boolean mobSpawning = true;
 	
 	// TODO probably a good candidate for a Builder
 	// TODO add equals, hashCode()
@@ -72,35 +84,65 @@ public class Property {
 	 * @param box
 	 */
 	public Property(ICoords coords, Box box) {
-		setCoords(coords);
-		setBox(box);
-		setOwner(new PlayerData());
-		setName(NO_NAME);
-		setUuid(UUID.randomUUID());
+		this(coords, box, new PlayerData());
 	}
 
 	public Property(ICoords coords, Box box, PlayerData data) {
-		this(coords, box);
-		setOwner(data);
+		this(coords, box, data, NO_NAME);
 	}
 	
 	public Property(ICoords coords, Box box, PlayerData data, String name) {
-		this(coords, box, data);
-		setName(name);
+		this(coords, box, data, name, UUID.randomUUID());
 	}
 	
+	/**
+	 * Does not generate a random uuid, so decoding claims in parallel does not contend on the shared random.
+	 */
 	public Property(ICoords coords, Box box, PlayerData data, String name, UUID uuid) {
-		this(coords, box, data, name);
+		setCoords(coords);
+		setBox(box);
+		setOwner(data);
+		setName(name);
 		setUuid(uuid);
 	}
+
+	/**
+	 * Load a property, without generating a random uuid that the saved one replaces.
+	 * @param nbt
+	 * @return
+	 */
+	public static Property of(CompoundTag nbt) {
+		return new Property(Coords.EMPTY, Box.EMPTY, new PlayerData(), NO_NAME, null).load(nbt);
+	}
+
+	/**
+	 * Copy constructor. Shares the interned players and the immutable coords and box.
+	 */
+	private Property(Property property) {
+		this.name = property.name;
+		this.uuid = property.uuid;
+		this.owner = property.owner;
+		this.coords = property.coords;
+		this.box = property.box;
+		this.mobSpawning = property.mobSpawning;
+		this.whitelist.addAll(property.whitelist);
+		this.whitelistIds = property.whitelistIds;
+	}
+
+	/**
+	 * A point-in-time copy, ie. for saving off the server thread.
+	 * Unlike the setters, copying does not intern players or change the registry epoch.
+	 * @return
+	 */
+	public synchronized Property copy() {
+		return new Property(this);
+	}
 	
 	/**
 	 * 
 	 * @param nbt
 	 */
 	public void save(CompoundTag nbt) {
-		ProtectIt.LOGGER.debug("saving claim -> {}", this);
-
 		CompoundTag ownerNbt = new CompoundTag();
 		getOwner().save(ownerNbt);
 		nbt.put(OWNER_KEY, ownerNbt);
@@ -123,6 +165,7 @@ public class Property {
 			list.add(playerNbt);
 		});
 		nbt.put(WHITELIST_KEY, list);
+		nbt.putBoolean(MOB_SPAWNING_KEY, isMobSpawning());
 	}
 
 	/**
@@ -134,7 +177,7 @@ public class Property {
 //		ProtectIt.LOGGER.debug("loading claim...");
 
 		if (nbt.contains(OWNER_KEY)) {
-			getOwner().load(nbt.getCompound(OWNER_KEY));
+			setOwner(new PlayerData().load(nbt.getCompound(OWNER_KEY)));
 		}
 		if (nbt.contains(COORDS_KEY)) {
 			setCoords(Coords.EMPTY.load(nbt.getCompound(COORDS_KEY)));
@@ -156,9 +199,12 @@ public class Property {
 			list.forEach(element -> {
 				PlayerData playerData = new PlayerData("");
 				playerData.load((CompoundTag)element);
-				getWhitelist().add(playerData);
+				addWhitelist(playerData);
 			});
 		}
+		if (nbt.contains(MOB_SPAWNING_KEY)) {
+			setMobSpawning(nbt.getBoolean(MOB_SPAWNING_KEY));
+		}
 		return this;
 	}
 
@@ -166,19 +212,121 @@ public class Property {
 		return owner;
 	}
 
+	/**
+	 * The owner is stored as the player's interned instance.
+	 * @param owner
+	 */
 	public void setOwner(PlayerData owner) {
-		this.owner = owner;
+		this.owner = ProtectionRegistries.players().intern(owner);
 	}
 
+	/**
+	 * 
+	 * @return a read-only view of the whitelist, for display
+	 */
 	public List<PlayerData> getWhitelist() {
-		if (whitelist == null) {
-			whitelist = new ArrayList<>();
+		return Collections.unmodifiableList(whitelist);
+	}
+
+	public synchronized void setWhitelist(List<PlayerData> whitelist) {
+		List<PlayerData> players = new ArrayList<>(whitelist);
+		this.whitelist.clear();
+		players.forEach(player -> this.whitelist.add(ProtectionRegistries.players().intern(player)));
+		updateWhitelistIds();
+	}
+
+	/**
+	 * 
+	 * @param player
+	 * @return false if the player is already whitelisted
+	 */
+	public synchronized boolean addWhitelist(PlayerData player) {
+		PlayerData interned = ProtectionRegistries.players().intern(player);
+		if (isWhitelisted(interned.getId()) || whitelist.stream().anyMatch(data -> data == interned || data.getUuid().equalsIgnoreCase(interned.getUuid()))) {
+			return false;
+		}
+		whitelist.add(interned);
+		updateWhitelistIds();
+		return true;
+	}
+
+	/**
+	 * 
+	 * @param predicate
+	 * @return whether any players were removed
+	 */
+	public synchronized boolean removeWhitelist(Predicate<PlayerData> predicate) {
+		boolean result = whitelist.removeIf(predicate);
+		if (result) {
+			updateWhitelistIds();
+		}
+		return result;
+	}
+
+	public synchronized void clearWhitelist() {
+		whitelist.clear();
+		updateWhitelistIds();
+	}
+
+	/**
+	 * Register the owner and whitelisted players with the dictionary, so they have ids.
+	 * Called by the registry when the property is added to it.
+	 * @param players
+	 */
+	public synchronized void register(PlayerDictionary players) {
+		owner = players.register(owner);
+		whitelist.replaceAll(players::register);
+		updateWhitelistIds();
+	}
+
+	public boolean isMobSpawning() {
+		return mobSpawning;
+	}
+
+	/**
+	 * Use IBlockProtectionRegistry.setMobSpawning() for registered properties,
+	 * so the registry's spawn lookup is kept in sync.
+	 * @param mobSpawning
+	 */
+	public void setMobSpawning(boolean mobSpawning) {
+		this.mobSpawning = mobSpawning;
+	}
+
+	/**
+	 * Allocation-free, constant-time whitelist check.
+	 * @param playerId the player's dictionary id
+	 * @return
+	 */
+	public boolean isWhitelisted(int playerId) {
+		return playerId != PlayerDictionary.NO_ID && whitelistIds.contains(playerId);
+	}
+
+	public boolean isWhitelisted(UUID player) {
+		return isWhitelisted(ProtectionRegistries.players().getId(player));
+	}
+
+	/**
+	 * Allocation-free check of whether the player is the owner or is whitelisted.
+	 * A property without an owner is not accessible by anyone.
+	 * @param playerId the player's dictionary id
+	 * @return
+	 */
+	public boolean hasAccess(int playerId) {
+		int ownerId = owner.getId();
+		if (ownerId == PlayerDictionary.NO_ID || playerId == PlayerDictionary.NO_ID) {
+			return false;
 		}
-		return whitelist;
+		return ownerId == playerId || isWhitelisted(playerId);
 	}
 
-	public void setWhitelist(List<PlayerData> whitelist) {
-		this.whitelist = whitelist;
+	private void updateWhitelistIds() {
+		IntOpenHashSet ids = new IntOpenHashSet(whitelist.size());
+		whitelist.forEach(player -> {
+			if (player.getId() != PlayerDictionary.NO_ID) {
+				ids.add(player.getId());
+			}
+		});
+		whitelistIds = ids;
 	}
 
 	public ICoords getCoords() {
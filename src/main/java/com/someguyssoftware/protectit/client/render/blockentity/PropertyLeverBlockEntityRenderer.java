@@ -78,7 +78,7 @@ public class PropertyLeverBlockEntityRenderer implements BlockEntityRenderer<Pro
 		}
 		if (StringUtils.isBlank(property.getOwner().getUuid()) ||
 				(!Minecraft.getInstance().player.getStringUUID().equalsIgnoreCase(property.getOwner().getUuid()) &&
-				property.getWhitelist().stream().noneMatch(p -> p.getUuid().equals(Minecraft.getInstance().player.getStringUUID())))) {	
+				!property.isWhitelisted(Minecraft.getInstance().player.getUUID()))) {	
 //			ProtectIt.LOGGER.debug("not owner nor whitelist -> {}, {}", Minecraft.getInstance().player.getDisplayName().getString(), Minecraft.getInstance().player.getStringUUID());
 			return;
 		}
@@ -126,7 +126,7 @@ public class CommandHelper {
 		source.sendSuccess(Component.translatable(LangUtil.message("property.rename.success"))
 				.append(Component.translatable(newName.toUpperCase()).withStyle(ChatFormatting.AQUA)), false);
 
-		saveData(source.getLevel());
+		saveData(source.getLevel(), namedClaims.get(0));
 		// NOTE it is not necessary to send message to client as rename() method is called from server
 		// and server registry is used to lookup rename() etc.	
 		
@@ -227,13 +227,14 @@ public class CommandHelper {
 	}
 	
 	/**
-	 * 
-	 * @param source
+	 * Journal the new or changed claim.
+	 * @param level
+	 * @param claim
 	 */
-	static void saveData(ServerLevel level) {
+	static void saveData(ServerLevel level, Property claim) {
 		ProtectItSavedData savedData = ProtectItSavedData.get(level);
 		if (savedData != null) {
-			savedData.setDirty();
+			savedData.claimChanged(claim);
 		}	
 	}
 	
@@ -268,14 +269,12 @@ public class CommandHelper {
 	 * @return
 	 */
 	public static Optional<Property> getProperty(UUID owner, UUID property) {
-		// get the owner's properties
-		List<Property> claims = ProtectionRegistries.block().getProtections(owner.toString());
-		// get the named property
-		List<Property> namedClaims = claims.stream().filter(claim -> claim.getUuid().equals(property)).collect(Collectors.toList());
-		if (namedClaims.isEmpty()) {
+		// get the property by uuid and verify the owner
+		Property claim = ProtectionRegistries.block().getClaimByUuid(property);
+		if (claim == null || !owner.toString().equals(claim.getOwner().getUuid())) {
 			return Optional.empty();
 		}
-		return Optional.ofNullable(namedClaims.get(0));
+		return Optional.of(claim);
 	}
 	
 	/**
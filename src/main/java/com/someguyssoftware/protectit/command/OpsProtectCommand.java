@@ -214,7 +214,7 @@ public class OpsProtectCommand {
 		ServerLevel world = source.getLevel();
 		ProtectItSavedData savedData = ProtectItSavedData.get(world);
 		if (savedData != null) {
-			savedData.setDirty();
+			savedData.claimsRemoved(validCoords.get().getA(), validCoords.get().getB(), null);
 		}
 		if(((ServerLevel)world).getServer().isDedicatedServer()) {
 			sendRemoveMessage(RegistryMutatorMessageToClient.BLOCK_TYPE, 
@@ -249,7 +249,7 @@ public class OpsProtectCommand {
 			ServerLevel world = source.getLevel();
 			ProtectItSavedData savedData = ProtectItSavedData.get(world);
 			if (savedData != null) {
-				savedData.setDirty();
+				savedData.claimsRemoved(validCoords.get().getA(), validCoords.get().getB(), uuid);
 			}
 			if(((ServerLevel)world).getServer().isDedicatedServer()) {
 				sendRemoveMessage(RegistryMutatorMessageToClient.BLOCK_TYPE, validCoords.get().getA(), validCoords.get().getB(), uuid);
@@ -271,16 +271,7 @@ public class OpsProtectCommand {
 		try {
 			// parse out the uuid
 			uuid = CommandHelper.parseNameUuid(uuid);
-			ProtectionRegistries.block().removeProtection(uuid);
-			// save world data
-			ServerLevel world = source.getLevel();
-			ProtectItSavedData savedData = ProtectItSavedData.get(world);
-			if (savedData != null) {
-				savedData.setDirty();
-			}
-			if(((ServerLevel)world).getServer().isDedicatedServer()) {
-				sendRemoveMessage(RegistryMutatorMessageToClient.BLOCK_TYPE, null, null, uuid);
-			}
+			purge(source, uuid);
 		}
 		catch(Exception e) {
 			ProtectIt.LOGGER.error("error on remove uuid -> ", e);
@@ -302,18 +293,7 @@ public class OpsProtectCommand {
 			Player player = (Player)entity;
 			uuid = player.getStringUUID();				
 		}
-		ProtectionRegistries.block().removeProtection(uuid);
-		// save world data
-		ServerLevel world = source.getLevel();
-		ProtectItSavedData savedData = ProtectItSavedData.get(world);
-		if (savedData != null) {
-			savedData.setDirty();
-		}
-		if(((ServerLevel)world).getServer().isDedicatedServer()) {
-			sendRemoveMessage(RegistryMutatorMessageToClient.BLOCK_TYPE, null, null, uuid);
-		}
-
-		return 1;
+		return purge(source, uuid);
 	}
 
 	/**
@@ -345,7 +325,7 @@ public class OpsProtectCommand {
 			ServerLevel world = source.getLevel();
 			ProtectItSavedData savedData = ProtectItSavedData.get(world);
 			if (savedData != null) {
-				savedData.setDirty();
+				savedData.claimsRemoved(validCoords.get().getA(), validCoords.get().getB(), uuid);
 			}
 			if(((ServerLevel)world).getServer().isDedicatedServer()) {
 				sendRemoveMessage(RegistryMutatorMessageToClient.BLOCK_TYPE, 
@@ -444,7 +424,7 @@ public class OpsProtectCommand {
 			ProtectionRegistries.block().addProtection(claim);
 
 			// save world data
-			CommandHelper.saveData(source.getLevel());
+			CommandHelper.saveData(source.getLevel(), claim);
 
 			// send message to add protection on all clients
 			if(source.getLevel().getServer().isDedicatedServer()) {
@@ -475,20 +455,31 @@ public class OpsProtectCommand {
 	 */
 	private static int clear(CommandSourceStack source, ServerPlayer player) {
 		// remove all properties from player
-		ProtectionRegistries.block().removeProtection(player.getStringUUID());
+		return purge(source, player.getStringUUID());
+	}
+
+	/**
+	 * Remove all of the owner's properties as a single bulk removal,
+	 * with one journal record and one message to clients.
+	 * @param source
+	 * @param uuid
+	 * @return
+	 */
+	private static int purge(CommandSourceStack source, String uuid) {
+		ProtectionRegistries.block().removeProtection(uuid);
 
 		ServerLevel world = source.getLevel();
 		ProtectItSavedData savedData = ProtectItSavedData.get(world);
 		if (savedData != null) {
-			savedData.setDirty();
+			savedData.ownerPurged(uuid);
 		}
 
 		if(((ServerLevel)world).getServer().isDedicatedServer()) {
-			// send message to add protection on all clients
+			// send message to clear the owner's protections on all clients
 			RegistryMutatorMessageToClient message = new RegistryMutatorMessageToClient.Builder(
 					RegistryMutatorMessageToClient.BLOCK_TYPE, 
 					RegistryMutatorMessageToClient.CLEAR_ACTION, 
-					player.getStringUUID()).build();
+					uuid).build();
 			ProtectItNetworking.channel.send(PacketDistributor.ALL.noArg(), message);
 		}
 		return 1;
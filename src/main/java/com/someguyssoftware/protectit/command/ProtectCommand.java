@@ -25,6 +25,7 @@ import java.util.stream.Collectors;
 import javax.annotation.Nullable;
 
 import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.arguments.BoolArgumentType;
 import com.mojang.brigadier.arguments.StringArgumentType;
 import com.mojang.brigadier.exceptions.CommandSyntaxException;
 import com.mojang.brigadier.suggestion.SuggestionProvider;
@@ -59,6 +60,8 @@ public class ProtectCommand {
 	private static final String CURRENT_NAME = "current_name";
 	private static final String NEW_NAME = "new_name";
 	private static final String PROPERTY_NAME = "property_name";
+	private static final String MOB_SPAWNING = "mobs";
+	private static final String ENABLED = "enabled";
 
 	private static final SuggestionProvider<CommandSourceStack> PROPERTY_NAMES = (source, builder) -> {
 		List<Property> properties = ProtectionRegistries.block().getProtections(source.getSource().getPlayerOrException().getStringUUID());
@@ -73,7 +76,7 @@ public class ProtectCommand {
 	};
 
 	/*
-	 * protect [block | pvp] [give | list | rename | whitelist [add | remove | clear | list]]
+	 * protect [block | pvp] [give | list | rename | mobs | whitelist [add | remove | clear | list]]
 	 */
 	public static void register(CommandDispatcher<CommandSourceStack> dispatcher) {
 		dispatcher
@@ -102,6 +105,18 @@ public class ProtectCommand {
 												)
 										)
 								)
+						///// MOB SPAWNING OPTION /////
+						.then(Commands.literal(MOB_SPAWNING)
+								.then(Commands.argument(PROPERTY_NAME, StringArgumentType.string())
+										.suggests(PROPERTY_NAMES)
+										.then(Commands.argument(ENABLED, BoolArgumentType.bool())
+												.executes(source -> {
+													return mobSpawning(source.getSource(), 
+															StringArgumentType.getString(source, PROPERTY_NAME), BoolArgumentType.getBool(source, ENABLED));
+												})
+												)
+										)
+								)
 						///// GIVE OPTION /////
 						.then(Commands.literal(CommandHelper.GIVE)
 								.requires(source -> {
@@ -202,9 +217,8 @@ public class ProtectCommand {
 			}
 			Property property = namedProperties.get(0);
 			// update property whitelist with player
-			if (property.getWhitelist().stream().noneMatch(data -> data.getName().equalsIgnoreCase(player.getDisplayName().getString()))) {
-				property.getWhitelist().add(new PlayerData(player.getStringUUID(), player.getDisplayName().getString()));
-				CommandHelper.saveData(source.getLevel());
+			if (ProtectionRegistries.block().addWhitelist(property, new PlayerData(player.getStringUUID(), player.getDisplayName().getString()))) {
+				CommandHelper.saveData(source.getLevel(), property);
 			}
 			//send update to client
 			if(source.getLevel().getServer().isDedicatedServer()) {
@@ -254,8 +268,10 @@ public class ProtectCommand {
 			Property property = names.get(0);
 			// update property whitelist with player
 //			claim.getWhitelist().remove(new PlayerData(player.getStringUUID(), player.getDisplayName().getString()));
-			boolean result = property.getWhitelist().removeIf(p -> p.getName().equalsIgnoreCase(playerName));
-			CommandHelper.saveData(source.getLevel());
+			boolean result = ProtectionRegistries.block().removeWhitelist(property, p -> p.getName().equalsIgnoreCase(playerName));
+			if (result) {
+				CommandHelper.saveData(source.getLevel(), property);
+			}
 
 			// send update to client
 			if(result && source.getLevel().getServer().isDedicatedServer()) {
@@ -304,8 +320,8 @@ public class ProtectCommand {
 				return 1;
 			}
 			Property claim = namedClaims.get(0);
-			claim.getWhitelist().clear();
-			CommandHelper.saveData(source.getLevel());
+			ProtectionRegistries.block().clearWhitelist(claim);
+			CommandHelper.saveData(source.getLevel(), claim);
 
 			//send update to client
 			if(source.getLevel().getServer().isDedicatedServer()) {
@@ -328,6 +344,43 @@ public class ProtectCommand {
 		return 1;
 	}
 
+	/**
+	 * 
+	 * @param source
+	 * @param propertyName
+	 * @param enabled
+	 * @return
+	 */
+	public static int mobSpawning(CommandSourceStack source, String propertyName, boolean enabled) {
+		ProtectIt.LOGGER.debug("Executing mobSpawning() command...");
+
+		try {
+			// get the owner
+			ServerPlayer owner = source.getPlayerOrException();
+			// get the owner's properties
+			List<Property> claims = ProtectionRegistries.block().getProtections(owner.getStringUUID());
+			// get the named property
+			List<Property> namedClaims = claims.stream().filter(claim -> claim.getName().equalsIgnoreCase(propertyName)).collect(Collectors.toList());
+			if (namedClaims.isEmpty()) {
+				source.sendFailure(Component.translatable(LangUtil.message("property.name.unknown"))
+						.append(Component.translatable(propertyName.toUpperCase()).withStyle(ChatFormatting.AQUA)));
+				return 1;
+			}
+			ProtectionRegistries.block().setMobSpawning(namedClaims.get(0), enabled);
+			CommandHelper.saveData(source.getLevel(), namedClaims.get(0));
+
+			source.sendSuccess(Component.translatable(LangUtil.message(enabled ? "mob_spawning.enabled" : "mob_spawning.disabled"))
+					.append(Component.translatable(propertyName).withStyle(ChatFormatting.AQUA)), false);
+
+		} catch (Exception e) {
+			ProtectIt.LOGGER.error("Unable to execute mobSpawning command:", e);
+			source.sendFailure(Component.translatable(LangUtil.message("unexcepted_error"))
+					.withStyle(ChatFormatting.RED));
+		}
+
+		return 1;
+	}
+
 	/**
 	 * 
 	 * @param source
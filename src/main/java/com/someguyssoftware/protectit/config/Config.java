@@ -18,10 +18,12 @@
 package com.someguyssoftware.protectit.config;
 
 import com.someguyssoftware.protectit.ProtectIt;
+import com.someguyssoftware.protectit.registry.ProtectionIndexType;
 
 import mod.gottsch.forge.gottschcore.config.AbstractConfig;
 import net.minecraftforge.common.ForgeConfigSpec;
 import net.minecraftforge.common.ForgeConfigSpec.BooleanValue;
+import net.minecraftforge.common.ForgeConfigSpec.EnumValue;
 import net.minecraftforge.common.ForgeConfigSpec.IntValue;
 import net.minecraftforge.fml.common.Mod.EventBusSubscriber;
 
@@ -34,30 +36,31 @@ import net.minecraftforge.fml.common.Mod.EventBusSubscriber;
 public class Config extends AbstractConfig {
 	public static final String GENERAL_CATEGORY = "general";
 	public static final String PROTECTION_CATEGORY = "protection";
+	public static final String REGISTRY_CATEGORY = "registry";
+	public static final String MESSAGES_CATEGORY = "messages";
 	public static final String UNDERLINE_DIV = "------------------------------";
 
 	protected static final ForgeConfigSpec.Builder COMMON_BUILDER = new ForgeConfigSpec.Builder();
-	protected static final ForgeConfigSpec.Builder CLIENT_BUILDER = new ForgeConfigSpec.Builder();
 	protected static final ForgeConfigSpec.Builder SERVER_BUILDER = new ForgeConfigSpec.Builder();
 	public static ForgeConfigSpec COMMON_CONFIG;
-	public static ForgeConfigSpec CLIENT_CONFIG;
 	public static ForgeConfigSpec SERVER_CONFIG;
 
 	public static final Logging LOGGING;
-	public static final Gui GUI;
 	public static final General GENERAL;
 	public static final Protection PROTECTION;
+	public static final Registry REGISTRY;
+	public static final Messages MESSAGES;
 	
 	public static Config instance = new Config();
 	
 	static {
 		LOGGING = new Logging(COMMON_BUILDER);
-		GUI = new Gui(CLIENT_BUILDER);
 		GENERAL = new General(SERVER_BUILDER);
 		PROTECTION = new Protection(SERVER_BUILDER);
+		REGISTRY = new Registry(SERVER_BUILDER);
+		MESSAGES = new Messages(SERVER_BUILDER);
 		
 		COMMON_CONFIG = COMMON_BUILDER.build();
-		CLIENT_CONFIG = CLIENT_BUILDER.build();
 		SERVER_CONFIG = SERVER_BUILDER.build();
 		
 		Config.init();
@@ -67,21 +70,6 @@ public class Config extends AbstractConfig {
 		Config.GENERAL.init();
 	}
 
-	/*
-	 * 
-	 */
-	public static class Gui {
-		public BooleanValue enableProtectionMessage;
-		
-		public Gui(final ForgeConfigSpec.Builder builder) {
-			builder.comment(CATEGORY_DIV, " Client GUI properties for Protect It  mod.", CATEGORY_DIV).push("GUI");
-			enableProtectionMessage = builder
-					.comment(" Enables protection message in chat. If enabled, when protection is triggered, a message will display in the chat.")
-					.define("Protection messages in chat:", false);
-			builder.pop();
-		}		
-	}
-	
 	/**
 	 * 
 	 * @author Mark Gottschling on Nov 3, 2021
@@ -123,6 +111,10 @@ public class Config extends AbstractConfig {
 		public BooleanValue enableLivingDestroyBlockEvent;
 		public BooleanValue enablePistionEvent;
 		public BooleanValue enableExplosionDetonateEvent;
+		public BooleanValue enableFluidPlaceEvent;
+		public BooleanValue enableFireSpreadEvent;
+		public BooleanValue enableItemTransferEvent;
+		public BooleanValue enableMobSpawnEvent;
 		
 		Protection(final ForgeConfigSpec.Builder builder) {
 			builder.comment(CATEGORY_DIV, 
@@ -163,11 +155,76 @@ public class Config extends AbstractConfig {
 			enableExplosionDetonateEvent = builder
 					.comment(" Enables explosion protection. If enabled, explosions will not destory protected blocks.")
 					.define("Explosion proctection:", true);
+
+			enableFluidPlaceEvent = builder
+					.comment(" Enables fluid protection. If enabled, fluids outside the property will not place blocks in the property. Ex. lava will not set fire or make cobblestone.")
+					.define("Fluid place proctection:", true);
+
+			enableFireSpreadEvent = builder
+					.comment(" Enables fire spread protection. If enabled, fire outside the property is put out if it could burn a block of the property,",
+							" and fire that spreads into the property is put out.")
+					.define("Fire spread proctection:", true);
+
+			enableItemTransferEvent = builder
+					.comment(" Enables item transfer protection. If enabled, hoppers, droppers and dispensers can not be placed by others",
+							" where they would pull from or push into the property, and ones outside the property that would, ie. after the property is claimed,",
+							" are disabled. Hopper minecarts are disabled under the property. Ex. a hopper under the property will not drain a chest.")
+					.define("Item transfer proctection:", true);
+
+			enableMobSpawnEvent = builder
+					.comment(" Enables mob spawn control. If enabled, owners can disable hostile mob spawning in their property.")
+					.define("Mob spawn control:", true);
 			
 			builder.pop();
 		}
 	}
 
+	/**
+	 * 
+	 * @author Mark Gottschling on Mar 4, 2023
+	 *
+	 */
+	public static class Registry {
+		public EnumValue<ProtectionIndexType> protectionIndex;
+		public IntValue chunkBucketThreshold;
+		public IntValue sectionCacheSize;
+		public IntValue journalCompactionThreshold;
+		public BooleanValue enableIndexImage;
+
+		Registry(final ForgeConfigSpec.Builder builder) {
+			builder.comment(CATEGORY_DIV, " Protection registry properties for Protect It mod.", CATEGORY_DIV).push(REGISTRY_CATEGORY);
+
+			protectionIndex = builder
+					.comment(" The spatial index used for protection lookups.",
+							" TREE = balanced interval tree. CHUNK = chunk-bucketed hash index, faster for servers with many small properties.",
+							" PACKED = compact array-backed interval tree, uses the least memory for servers with very many properties.",
+							" Takes effect when the world is loaded.")
+					.defineEnum("Protection index:", ProtectionIndexType.TREE);
+
+			chunkBucketThreshold = builder
+					.comment(" The max number of chunks a property can span before the CHUNK index stores it by region instead of by chunk.")
+					.defineInRange("Chunk bucket threshold:", 64, 1, 4096);
+
+			sectionCacheSize = builder
+					.comment(" The max number of 16x16x16 chunk sections whose protection state is cached for single block lookups.",
+							" Sections that are unclaimed or covered by one property skip the protection index. 0 = disabled.")
+					.defineInRange("Section cache size:", 4096, 0, 1048576);
+
+			journalCompactionThreshold = builder
+					.comment(" The number of journaled property changes after which the changed properties are written on the next world save.",
+							" Changes are appended to a journal instead of being written on every change. 0 = disable the journal.")
+					.defineInRange("Journal compaction threshold:", 1000, 0, 1000000);
+
+			enableIndexImage = builder
+					.comment(" Save the built protection index to an image file with each world save and when the server stops, and memory map it",
+							" on the next start instead of rebuilding the index. The properties are still loaded from their region files,",
+							" so this only skips sorting and building the index, about half of the start time with very many properties.")
+					.define("Enable index image:", false);
+
+			builder.pop();
+		}
+	}
+
 	@Override
 	public String getLogsFolder() {
 		return Config.LOGGING.folder.get();
@@ -181,4 +238,39 @@ public class Config extends AbstractConfig {
 	public String getLoggingLevel() {
 		return Config.LOGGING.level.get();
 	}
+
+	/**
+	 * 
+	 * @author Mark Gottschling on Mar 9, 2023
+	 *
+	 */
+	public static class Messages {
+		public BooleanValue enableProtectionMessage;
+		public IntValue protectionMessageInterval;
+		public BooleanValue showSuppressedCount;
+		public BooleanValue useActionBar;
+
+		Messages(final ForgeConfigSpec.Builder builder) {
+			builder.comment(CATEGORY_DIV, " Protection message properties for Protect It mod.", CATEGORY_DIV).push(MESSAGES_CATEGORY);
+
+			enableProtectionMessage = builder
+					.comment(" Enables the protection message. If enabled, a player is notified when protection denies their action.")
+					.define("Protection messages:", true);
+
+			protectionMessageInterval = builder
+					.comment(" The min. number of ticks between protection messages to the same player. Denied actions within the interval are not messaged.",
+							" 0 = message every denied action.")
+					.defineInRange("Protection message interval:", 40, 0, 1200);
+
+			showSuppressedCount = builder
+					.comment(" Enables appending the number of denied actions that were not messaged since the last protection message.")
+					.define("Show suppressed count:", true);
+
+			useActionBar = builder
+					.comment(" Enables displaying the protection message on the action bar instead of in the chat.")
+					.define("Use action bar:", true);
+
+			builder.pop();
+		}
+	}
 }
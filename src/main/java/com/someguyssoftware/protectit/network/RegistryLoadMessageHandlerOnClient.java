@@ -23,7 +23,6 @@ import java.util.Optional;
 import java.util.function.Supplier;
 
 import com.someguyssoftware.protectit.ProtectIt;
-import com.someguyssoftware.protectit.claim.Property;
 import com.someguyssoftware.protectit.registry.IBlockProtectionRegistry;
 import com.someguyssoftware.protectit.registry.PlayerData;
 import com.someguyssoftware.protectit.registry.ProtectionRegistries;
@@ -96,11 +95,8 @@ public class RegistryLoadMessageHandlerOnClient {
 			}
 			ProtectIt.LOGGER.debug("using registry -> {}", registry);
 			
-			// load registry from interval list
-			for(Property property : message.getProperties()) {
-				ProtectIt.LOGGER.debug("adding property to registry -> {}", property);
-				registry.addProtection(property);
-			}
+			// load registry from property list, building the index once
+			registry.addProtections(message.getProperties());
 		}
 		catch(Exception e) {
 			ProtectIt.LOGGER.error("Unexpected error ->", e);
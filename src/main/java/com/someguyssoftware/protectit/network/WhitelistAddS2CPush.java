@@ -27,6 +27,7 @@ import com.someguyssoftware.protectit.ProtectIt;
 import com.someguyssoftware.protectit.claim.Property;
 import com.someguyssoftware.protectit.command.CommandHelper;
 import com.someguyssoftware.protectit.registry.PlayerData;
+import com.someguyssoftware.protectit.registry.ProtectionRegistries;
 
 import net.minecraft.client.multiplayer.ClientLevel;
 import net.minecraft.network.FriendlyByteBuf;
@@ -128,10 +129,8 @@ public class WhitelistAddS2CPush {
 			Optional<Property> property = CommandHelper.getProperty(message.owner, message.property);
 			if (property.isPresent()) {
 //				ProtectIt.LOGGER.debug("found property -> {} for owner -> {}", property.get().getName(), property.get().getOwner().getName());
-				if (property.get().getWhitelist().stream().noneMatch(data -> data.getName().equalsIgnoreCase(message.playerName))) {
-					property.get().getWhitelist().add(new PlayerData(message.playerUuid.toString(), message.playerName));
-//					ProtectIt.LOGGER.debug("added player -> {} to property whitelist -> {}", message.playerName, property.get().getName());
-				}
+				ProtectionRegistries.block().addWhitelist(property.get(), new PlayerData(message.playerUuid.toString(), message.playerName));
+//				ProtectIt.LOGGER.debug("added player -> {} to property whitelist -> {}", message.playerName, property.get().getName());
 				
 //				ProtectIt.LOGGER.debug("property white list -> {}", property.get().getWhitelist());
 			}
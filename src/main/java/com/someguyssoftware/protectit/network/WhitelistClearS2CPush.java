@@ -27,6 +27,7 @@ import com.someguyssoftware.protectit.ProtectIt;
 import com.someguyssoftware.protectit.claim.Property;
 import com.someguyssoftware.protectit.command.CommandHelper;
 import com.someguyssoftware.protectit.registry.PlayerData;
+import com.someguyssoftware.protectit.registry.ProtectionRegistries;
 
 import net.minecraft.client.multiplayer.ClientLevel;
 import net.minecraft.network.FriendlyByteBuf;
@@ -118,7 +119,7 @@ public class WhitelistClearS2CPush {
 			// get the property by uuid
 			Optional<Property> claim = CommandHelper.getProperty(message.owner, message.property);
 			if (claim.isPresent()) {
-				claim.get().getWhitelist().clear();
+				ProtectionRegistries.block().clearWhitelist(claim.get());
 			}
 		} catch (Exception e) {
 			ProtectIt.LOGGER.error("Unable to update whitelist on client: ", e);
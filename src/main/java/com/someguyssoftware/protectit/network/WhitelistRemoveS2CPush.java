@@ -26,7 +26,7 @@ import java.util.function.Supplier;
 import com.someguyssoftware.protectit.ProtectIt;
 import com.someguyssoftware.protectit.claim.Property;
 import com.someguyssoftware.protectit.command.CommandHelper;
-import com.someguyssoftware.protectit.registry.PlayerData;
+import com.someguyssoftware.protectit.registry.ProtectionRegistries;
 
 import net.minecraft.client.multiplayer.ClientLevel;
 import net.minecraft.network.FriendlyByteBuf;
@@ -135,11 +135,12 @@ public class WhitelistRemoveS2CPush {
 			if (property.isPresent()) {
 //				ProtectIt.LOGGER.debug("found property -> {} for owner -> {}", property.get().getName(), property.get().getOwner().getName());
 				if (message.playerName != null && message.playerUuid != null & !message.playerUuid.equals(EMPTY_UUID)) {
-					property.get().getWhitelist().remove(new PlayerData(message.playerUuid.toString(), message.playerName));
+					int playerId = ProtectionRegistries.players().getId(message.playerUuid.toString());
+					ProtectionRegistries.block().removeWhitelist(property.get(), p -> p.getId() == playerId);
 //					ProtectIt.LOGGER.debug("removed player -> {} by name/uuid from property whitelist -> {}", message.playerName, property.get().getName());
 				}
 				else {
-					property.get().getWhitelist().removeIf(p -> p.getName().equalsIgnoreCase(message.playerName));
+					ProtectionRegistries.block().removeWhitelist(property.get(), p -> p.getName().equalsIgnoreCase(message.playerName));
 //					ProtectIt.LOGGER.debug("removed player -> {} by name from property whitelist -> {}", message.playerName, property.get().getName());
 				}
 //				ProtectIt.LOGGER.debug("property white list -> {}", property.get().getWhitelist());
@@ -0,0 +1,274 @@
+/*
+ * This file is part of  Protect It.
+ * Copyright (c) 2023 Mark Gottschling (gottsch)
+ *
+ * All rights reserved.
+ *
+ * Protect It is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Protect It is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Protect It.  If not, see <http://www.gnu.org/licenses/lgpl>.
+ */
+package com.someguyssoftware.protectit.persistence;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import com.someguyssoftware.protectit.claim.Property;
+import com.someguyssoftware.protectit.registry.PlayerData;
+
+import mod.gottsch.forge.gottschcore.spatial.Box;
+import mod.gottsch.forge.gottschcore.spatial.Coords;
+import mod.gottsch.forge.gottschcore.spatial.ICoords;
+
+/**
+ * Compact binary encoding of the registry's claims.
+ * <p>
+ * Layout: [version][players][claims], where
+ * <ul>
+ * <li>players is a dictionary of every owner and whitelisted player, as raw uuid longs and a name.</li>
+ * <li>claims are sorted by their min coords, which are delta encoded from the previous claim's,
+ * followed by the box size, uuid, owner and whitelist dictionary indexes, and name.</li>
+ * </ul>
+ * All counts, indexes and coordinate deltas are varints.
+ *
+ * @author Mark Gottschling on Mar 11, 2023
+ *
+ */
+public final class ClaimCodec {
+	public static final int VERSION = 1;
+
+	// player entry is a raw uuid, otherwise a uuid string, ie. blank or malformed
+	private static final byte PLAYER_UUID = 0;
+	private static final byte PLAYER_STRING = 1;
+
+	// claim flags
+	private static final int COORDS_FLAG = 1;
+	private static final int NO_MOB_SPAWNING_FLAG = 2;
+
+	private static final Comparator<Property> BY_MIN_COORDS = Comparator
+			.<Property>comparingInt(claim -> claim.getBox().getMinCoords().getX())
+			.thenComparingInt(claim -> claim.getBox().getMinCoords().getZ())
+			.thenComparingInt(claim -> claim.getBox().getMinCoords().getY());
+
+	private ClaimCodec() {}
+
+	/**
+	 *
+	 * @param claims
+	 * @return the encoded claims
+	 * @throws IOException
+	 */
+	public static byte[] encode(Collection<Property> claims) throws IOException {
+		List<Property> sorted = new ArrayList<>(claims);
+		sorted.sort(BY_MIN_COORDS);
+
+		// players are interned, so identity finds the shared instance
+		Map<PlayerData, Integer> playerIndexes = new IdentityHashMap<>();
+		List<PlayerData> players = new ArrayList<>();
+		sorted.forEach(claim -> {
+			indexPlayer(claim.getOwner(), playerIndexes, players);
+			claim.getWhitelist().forEach(player -> indexPlayer(player, playerIndexes, players));
+		});
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + claims.size() * 48);
+		DataOutputStream out = new DataOutputStream(bytes);
+		writeVarInt(out, VERSION);
+
+		writeVarInt(out, players.size());
+		for (PlayerData player : players) {
+			UUID uuid = toUuid(player.getUuid());
+			if (uuid != null) {
+				out.writeByte(PLAYER_UUID);
+				out.writeLong(uuid.getMostSignificantBits());
+				out.writeLong(uuid.getLeastSignificantBits());
+			}
+			else {
+				out.writeByte(PLAYER_STRING);
+				out.writeUTF(player.getUuid() == null ? "" : player.getUuid());
+			}
+			out.writeUTF(player.getName() == null ? "" : player.getName());
+		}
+
+		writeVarInt(out, sorted.size());
+		int x = 0, y = 0, z = 0;
+		for (Property claim : sorted) {
+			ICoords min = claim.getBox().getMinCoords();
+			ICoords max = claim.getBox().getMaxCoords();
+			ICoords coords = claim.getCoords();
+			int flags = 0;
+			if (!min.equals(coords)) {
+				flags |= COORDS_FLAG;
+			}
+			if (!claim.isMobSpawning()) {
+				flags |= NO_MOB_SPAWNING_FLAG;
+			}
+			out.writeByte(flags);
+
+			writeVarInt(out, zigZag(min.getX() - x));
+			writeVarInt(out, zigZag(min.getY() - y));
+			writeVarInt(out, zigZag(min.getZ() - z));
+			x = min.getX();
+			y = min.getY();
+			z = min.getZ();
+			writeVarInt(out, max.getX() - min.getX());
+			writeVarInt(out, max.getY() - min.getY());
+			writeVarInt(out, max.getZ() - min.getZ());
+			if ((flags & COORDS_FLAG) != 0) {
+				writeVarInt(out, zigZag(coords.getX() - min.getX()));
+				writeVarInt(out, zigZag(coords.getY() - min.getY()));
+				writeVarInt(out, zigZag(coords.getZ() - min.getZ()));
+			}
+
+			out.writeLong(claim.getUuid().getMostSignificantBits());
+			out.writeLong(claim.getUuid().getLeastSignificantBits());
+			writeVarInt(out, playerIndexes.get(claim.getOwner()));
+			List<PlayerData> whitelist = claim.getWhitelist();
+			writeVarInt(out, whitelist.size());
+			for (PlayerData player : whitelist) {
+				writeVarInt(out, playerIndexes.get(player));
+			}
+			out.writeUTF(claim.getName() == null ? Property.NO_NAME : claim.getName());
+		}
+		out.flush();
+		return bytes.toByteArray();
+	}
+
+	/**
+	 *
+	 * @param data
+	 * @return the decoded claims, in min coords order
+	 * @throws IOException if the data is corrupt or of an unknown version
+	 */
+	public static List<Property> decode(byte[] data) throws IOException {
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+		int version = readVarInt(in);
+		if (version != VERSION) {
+			throw new IOException("unknown claim format version -> " + version);
+		}
+
+		int playerCount = readVarInt(in);
+		PlayerData[] players = new PlayerData[playerCount];
+		for (int i = 0; i < playerCount; i++) {
+			byte type = in.readByte();
+			String uuid;
+			if (type == PLAYER_UUID) {
+				uuid = new UUID(in.readLong(), in.readLong()).toString();
+			}
+			else if (type == PLAYER_STRING) {
+				uuid = in.readUTF();
+			}
+			else {
+				throw new IOException("unknown player entry type -> " + type);
+			}
+			players[i] = new PlayerData(uuid, in.readUTF());
+		}
+
+		int claimCount = readVarInt(in);
+		List<Property> claims = new ArrayList<>(claimCount);
+		int x = 0, y = 0, z = 0;
+		for (int i = 0; i < claimCount; i++) {
+			int flags = in.readUnsignedByte();
+			x += unZigZag(readVarInt(in));
+			y += unZigZag(readVarInt(in));
+			z += unZigZag(readVarInt(in));
+			ICoords min = new Coords(x, y, z);
+			ICoords max = new Coords(x + readVarInt(in), y + readVarInt(in), z + readVarInt(in));
+			ICoords coords = min;
+			if ((flags & COORDS_FLAG) != 0) {
+				coords = new Coords(x + unZigZag(readVarInt(in)), y + unZigZag(readVarInt(in)), z + unZigZag(readVarInt(in)));
+			}
+
+			UUID uuid = new UUID(in.readLong(), in.readLong());
+			PlayerData owner = player(players, readVarInt(in));
+			int whitelistSize = readVarInt(in);
+			List<PlayerData> whitelist = new ArrayList<>(whitelistSize);
+			for (int j = 0; j < whitelistSize; j++) {
+				whitelist.add(player(players, readVarInt(in)));
+			}
+			String name = in.readUTF();
+
+			Property claim = new Property(coords, new Box(min, max), owner, name, uuid);
+			if (!whitelist.isEmpty()) {
+				claim.setWhitelist(whitelist);
+			}
+			claim.setMobSpawning((flags & NO_MOB_SPAWNING_FLAG) == 0);
+			claims.add(claim);
+		}
+		return claims;
+	}
+
+	private static void indexPlayer(PlayerData player, Map<PlayerData, Integer> playerIndexes, List<PlayerData> players) {
+		if (!playerIndexes.containsKey(player)) {
+			playerIndexes.put(player, players.size());
+			players.add(player);
+		}
+	}
+
+	private static PlayerData player(PlayerData[] players, int index) throws IOException {
+		if (index < 0 || index >= players.length) {
+			throw new IOException("player index out of range -> " + index);
+		}
+		return players[index];
+	}
+
+	private static UUID toUuid(String uuid) {
+		if (uuid == null || uuid.isEmpty()) {
+			return null;
+		}
+		try {
+			UUID result = UUID.fromString(uuid);
+			// only if it round trips, so the decoded string is the same
+			return result.toString().equals(uuid) ? result : null;
+		}
+		catch(IllegalArgumentException e) {
+			return null;
+		}
+	}
+
+	private static int zigZag(int value) {
+		return (value << 1) ^ (value >> 31);
+	}
+
+	private static int unZigZag(int value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	static void writeVarInt(DataOutputStream out, int value) throws IOException {
+		while ((value & ~0x7F) != 0) {
+			out.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte(value);
+	}
+
+	static int readVarInt(DataInputStream in) throws IOException {
+		int value = 0;
+		for (int shift = 0; shift < 35; shift += 7) {
+			int b = in.readUnsignedByte();
+			value |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IOException("varint is too long");
+	}
+}
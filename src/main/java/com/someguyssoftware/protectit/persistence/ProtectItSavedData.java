@@ -19,14 +19,41 @@
  */
 package com.someguyssoftware.protectit.persistence;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import javax.annotation.Nullable;
+
 import com.someguyssoftware.protectit.ProtectIt;
+import com.someguyssoftware.protectit.claim.Property;
+import com.someguyssoftware.protectit.config.Config;
+import com.someguyssoftware.protectit.registry.BlockProtectionRegistry;
+import com.someguyssoftware.protectit.registry.IBlockProtectionRegistry;
 import com.someguyssoftware.protectit.registry.ProtectionRegistries;
+import com.someguyssoftware.protectit.registry.packed.MappedIntervalIndex;
 
+import mod.gottsch.forge.gottschcore.spatial.ICoords;
 import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.NbtIo;
+import net.minecraft.nbt.NbtUtils;
 import net.minecraft.server.level.ServerLevel;
 import net.minecraft.world.level.Level;
 import net.minecraft.world.level.saveddata.SavedData;
 import net.minecraft.world.level.storage.DimensionDataStorage;
+import net.minecraft.world.level.storage.LevelResource;
 
 /**
  * 
@@ -37,6 +64,47 @@ public class ProtectItSavedData extends SavedData {
 
 	private static final String PROTECT_IT = ProtectIt.MODID;
 	private static final String PROTECTION_REGISTRY = "protectionRegistry";
+	private static final String JOURNAL_FILE = PROTECT_IT + ".journal";
+	// the number of pending journal records that are flushed immediately, instead of on the next tick flush
+	private static final int JOURNAL_BATCH_SIZE = 64;
+	private static final String DATA_KEY = "data";
+	// the claim region files, in the data directory
+	private static final String REGIONS_DIR = PROTECT_IT;
+	/*
+	 * the index image files, by generation. an image is still mapped after it is loaded, and a mapped
+	 * file can't be replaced or deleted on some platforms, so each save writes the next generation and
+	 * older generations are deleted when they are no longer mapped, at the latest on the next start.
+	 */
+	private static final Pattern INDEX_IMAGE_FILE = Pattern.compile(Pattern.quote(PROTECT_IT) + "\\.(\\d+)\\.index");
+
+	// encodes and writes the changed regions, off the server thread
+	private static final ExecutorService SAVE_EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "Protect It Save");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private RegionClaimStorage storage;
+	/*
+	 * mutations since the last save. a mutation is journaled instead of marking
+	 * the data dirty, so the changed regions are only written when the journal is compacted.
+	 */
+	private ProtectionJournal journal;
+	private boolean isStorageLoaded;
+	// whether the claims were loaded from a single registry blob, and all regions must be written
+	private boolean isMigrating;
+	private Path dataPath;
+	// the newest index image generation, or 0 if there is none
+	private long indexImageGeneration;
+	// whether the index image matches the claims, ie. it was loaded and nothing has changed since
+	private boolean isIndexImageCurrent;
+
+	// the save being written, or null
+	private Future<Boolean> pendingSave;
+	// the regions of the save being written
+	private Collection<Long> pendingRegions;
+	// a save requested while another was being written, coalesced into one save after it
+	private File deferredSave;
 	
 	/**
 	 * 
@@ -48,27 +116,399 @@ public class ProtectItSavedData extends SavedData {
 
 	public static ProtectItSavedData load(CompoundTag tag) {
 		ProtectIt.LOGGER.debug("world data loading...");
+		ProtectItSavedData data = create();
 		if (tag.contains(PROTECTION_REGISTRY)) {
-			ProtectionRegistries.block().load(tag.getCompound(PROTECTION_REGISTRY));
+			CompoundTag registryTag = tag.getCompound(PROTECTION_REGISTRY);
+			ProtectionRegistries.block().load(registryTag);
+			// rewrite older saves as regions
+			if (BlockProtectionRegistry.isLegacyFormat(registryTag)) {
+				data.isMigrating = true;
+				data.setDirty();
+			}
 		}
-		return create();
+		return data;
 	}
 
+	/**
+	 * The claims are stored in the region files, so the registry tag is empty.
+	 */
 	@Override
 	public CompoundTag save(CompoundTag tag) {
-		ProtectIt.LOGGER.debug("world data saving...");
-		tag.put(PROTECTION_REGISTRY, ProtectionRegistries.block().save(new CompoundTag()));
+		tag.put(PROTECTION_REGISTRY, new CompoundTag());
 		return tag;
 	}
+
+	/**
+	 * Captures a snapshot of the changed regions on the server thread, then encodes and writes them on the save executor.
+	 * If a save is still being written, this save is deferred until it completes.
+	 */
+	@Override
+	public void save(File file) {
+		if (!isDirty()) {
+			return;
+		}
+		if (pendingSave != null) {
+			deferredSave = file;
+			return;
+		}
+		ProtectIt.LOGGER.debug("world data saving...");
+		if (isMigrating) {
+			ProtectionRegistries.block().markAllRegionsDirty();
+		}
+		Map<Long, List<Property>> regions = ProtectionRegistries.block().snapshotDirtyRegions();
+		CompoundTag data = save(new CompoundTag());
+		RegionClaimStorage storage = this.storage;
+		boolean replaceAll = isMigrating;
+		// write the image with every save, not only on a clean stop, so a crash does not lose it
+		List<Property> imageClaims = null;
+		Path imagePath = null;
+		Path previousImagePath = null;
+		if (Config.REGISTRY.enableIndexImage.get() && storage != null) {
+			imageClaims = ProtectionRegistries.block().getAll();
+			previousImagePath = indexImageGeneration > 0 ? indexImagePath(indexImageGeneration) : null;
+			imagePath = indexImagePath(++indexImageGeneration);
+		}
+		// the save includes every journaled mutation up to here
+		if (journal != null) {
+			journal.checkpoint();
+		}
+		setDirty(false);
+		pendingRegions = regions.keySet();
+		List<Property> claims = imageClaims;
+		Path path = imagePath;
+		Path previousPath = previousImagePath;
+		pendingSave = SAVE_EXECUTOR.submit(() -> write(file, data, storage, regions, replaceAll)
+				&& (claims == null || writeIndexImage(path, previousPath, claims)));
+	}
+
+	/**
+	 * Write the regions, then the data file. Until the data file is replaced, an older save's registry blob
+	 * is still loaded instead of the regions, so a failed migration is retried from the blob.
+	 */
+	private static boolean write(File file, CompoundTag data, RegionClaimStorage storage, Map<Long, List<Property>> regions, boolean replaceAll) {
+		try {
+			if (replaceAll) {
+				storage.clear();
+			}
+			for (Map.Entry<Long, List<Property>> region : regions.entrySet()) {
+				storage.write(region.getKey(), region.getValue());
+			}
+
+			CompoundTag tag = new CompoundTag();
+			tag.put(DATA_KEY, data);
+			NbtUtils.addCurrentDataVersion(tag);
+			// write beside the file and move over it, so a crash mid-write never leaves a partial file
+			Path path = file.toPath();
+			Path tempPath = path.resolveSibling(path.getFileName() + ".tmp");
+			NbtIo.writeCompressed(tag, tempPath.toFile());
+			ProtectionJournal.move(tempPath, path);
+			ProtectIt.LOGGER.debug("saved {} claim regions", regions.size());
+			return true;
+		} catch (Exception e) {
+			ProtectIt.LOGGER.error("unable to save protection registry:", e);
+			return false;
+		}
+	}
+
+	/**
+	 * Finish a written save on the server thread.
+	 * @param wait whether to wait for the save to be written
+	 */
+	private void completeSave(boolean wait) {
+		if (pendingSave == null || (!wait && !pendingSave.isDone())) {
+			return;
+		}
+		boolean isSaved;
+		try {
+			isSaved = pendingSave.get();
+		} catch (InterruptedException | ExecutionException e) {
+			ProtectIt.LOGGER.error("unable to complete protection registry save:", e);
+			isSaved = false;
+		}
+		pendingSave = null;
+		if (isSaved) {
+			isMigrating = false;
+			if (journal != null) {
+				journal.truncateToCheckpoint();
+			}
+		}
+		else {
+			// keep the journal and retry the regions with the next save
+			ProtectionRegistries.block().markRegionsDirty(pendingRegions);
+			setDirty();
+		}
+		pendingRegions = null;
+
+		if (deferredSave != null) {
+			File file = deferredSave;
+			deferredSave = null;
+			save(file);
+		}
+	}
+
+	/**
+	 * Load the claim regions, unless an older save's registry blob was loaded.
+	 * Then replay the journal on top of the loaded registry, and open it for new mutations.
+	 * @param dataPath the world data directory
+	 */
+	private void openStorage(Path dataPath) {
+		isStorageLoaded = true;
+		this.dataPath = dataPath;
+		storage = new RegionClaimStorage(dataPath.resolve(REGIONS_DIR));
+		indexImageGeneration = findIndexImages();
+		if (!isMigrating) {
+			IBlockProtectionRegistry registry = ProtectionRegistries.block();
+			registry.clear();
+			List<Property> claims = storage.loadAll();
+			if (Config.REGISTRY.enableIndexImage.get() && indexImageGeneration > 0) {
+				isIndexImageCurrent = loadIndexImage(registry, claims);
+			}
+			else if (!claims.isEmpty()) {
+				registry.addProtections(claims);
+			}
+			registry.clearDirtyRegions();
+		}
+
+		journal = new ProtectionJournal(dataPath.resolve(JOURNAL_FILE));
+		int count = journal.replay(ProtectionRegistries.block());
+		if (count > 0) {
+			ProtectIt.LOGGER.info("replayed {} registry journal records", count);
+			isIndexImageCurrent = false;
+		}
+		try {
+			journal.open();
+		} catch (IOException e) {
+			ProtectIt.LOGGER.error("unable to open registry journal, changes will only be saved with the world:", e);
+			journal = null;
+		}
+		compactIfFull();
+	}
+
+	/**
+	 * Find the newest index image generation, and delete the older generations, which are no longer mapped.
+	 * @return the newest generation, or 0 if there is no image
+	 */
+	private long findIndexImages() {
+		if (!Files.isDirectory(dataPath)) {
+			return 0;
+		}
+		TreeSet<Long> generations = new TreeSet<>();
+		try (Stream<Path> files = Files.list(dataPath)) {
+			files.forEach(file -> {
+				Matcher matcher = INDEX_IMAGE_FILE.matcher(file.getFileName().toString());
+				if (matcher.matches()) {
+					generations.add(Long.parseLong(matcher.group(1)));
+				}
+			});
+		} catch (IOException e) {
+			ProtectIt.LOGGER.warn("unable to list protection index images:", e);
+			return 0;
+		}
+		if (generations.isEmpty()) {
+			return 0;
+		}
+		long newest = generations.pollLast();
+		generations.forEach(this::deleteIndexImage);
+		return newest;
+	}
+
+	private Path indexImagePath(long generation) {
+		return dataPath.resolve(PROTECT_IT + "." + generation + ".index");
+	}
+
+	private void deleteIndexImage(long generation) {
+		deleteIndexImage(indexImagePath(generation));
+	}
+
+	/**
+	 * Delete an older index image. An image that is still mapped may not be deletable, and is deleted on the next start.
+	 * @param path
+	 */
+	private static void deleteIndexImage(Path path) {
+		try {
+			Files.deleteIfExists(path);
+		} catch (IOException e) {
+			ProtectIt.LOGGER.debug("unable to delete protection index image {}, it will be deleted on the next start", path.getFileName());
+		}
+	}
+
+	/**
+	 * Write the image of the claims as saved in the regions, on the save executor. A failed image is only logged,
+	 * as the regions are saved, and on the next start the newest image is only used if it matches them.
+	 * @param path the next generation
+	 * @param previousPath the previous generation, or null
+	 * @param claims
+	 * @return true
+	 */
+	private static boolean writeIndexImage(Path path, @Nullable Path previousPath, List<Property> claims) {
+		try {
+			MappedIntervalIndex.write(path, claims);
+			if (previousPath != null) {
+				deleteIndexImage(previousPath);
+			}
+			ProtectIt.LOGGER.debug("saved protection index image with {} properties", claims.size());
+		} catch (IOException e) {
+			ProtectIt.LOGGER.warn("unable to save protection index image:", e);
+		}
+		return true;
+	}
+
+	/**
+	 * Load the claims with the index image as the index. The image is only used if it holds exactly the claims.
+	 * @return whether the image was used
+	 */
+	private boolean loadIndexImage(IBlockProtectionRegistry registry, List<Property> claims) {
+		try {
+			if (registry.load(claims, MappedIntervalIndex.open(indexImagePath(indexImageGeneration)))) {
+				ProtectIt.LOGGER.info("loaded protection index image with {} properties", claims.size());
+				return true;
+			}
+			ProtectIt.LOGGER.info("protection index image is out of date, rebuilt the index");
+			return false;
+		} catch (IOException e) {
+			ProtectIt.LOGGER.warn("unable to open protection index image, rebuilding the index:", e);
+		}
+		registry.addProtections(claims);
+		return false;
+	}
+
+	/**
+	 * Write the changed regions, so the regions match the registry, then write the index image of the registry
+	 * as the next generation. The loaded image may still be mapped, so it is never overwritten.
+	 * Called when the server stops, if the registry changed since the image was loaded.
+	 */
+	private void saveIndexImage() {
+		IBlockProtectionRegistry registry = ProtectionRegistries.block();
+		Map<Long, List<Property>> regions = registry.snapshotDirtyRegions();
+		try {
+			for (Map.Entry<Long, List<Property>> region : regions.entrySet()) {
+				storage.write(region.getKey(), region.getValue());
+			}
+			// the regions now hold every journaled change
+			if (journal != null) {
+				journal.reset();
+			}
+			long generation = indexImageGeneration + 1;
+			MappedIntervalIndex.write(indexImagePath(generation), registry.getAll());
+			if (indexImageGeneration > 0) {
+				deleteIndexImage(indexImageGeneration);
+			}
+			indexImageGeneration = generation;
+			isIndexImageCurrent = true;
+			ProtectIt.LOGGER.debug("saved protection index image");
+		} catch (IOException e) {
+			registry.markRegionsDirty(regions.keySet());
+			ProtectIt.LOGGER.error("unable to save protection index image:", e);
+		}
+	}
+
+	/**
+	 * Record a new or changed claim, ie. added, renamed or whitelist changed.
+	 * @param claim
+	 */
+	public void claimChanged(Property claim) {
+		ProtectionRegistries.block().markRegionDirty(claim);
+		isIndexImageCurrent = false;
+		if (isJournaling()) {
+			journal.put(claim);
+			afterJournal();
+		}
+	}
+
+	/**
+	 * Record the removal of the claims in the area.
+	 * @param coords1
+	 * @param coords2
+	 * @param owner the owner's uuid, or null for any owner
+	 */
+	public void claimsRemoved(ICoords coords1, ICoords coords2, @Nullable String owner) {
+		isIndexImageCurrent = false;
+		if (isJournaling()) {
+			journal.remove(coords1, coords2, owner);
+			afterJournal();
+		}
+	}
+
+	/**
+	 * Record the removal of all of the owner's claims.
+	 * @param owner the owner's uuid
+	 */
+	public void ownerPurged(String owner) {
+		isIndexImageCurrent = false;
+		if (isJournaling()) {
+			journal.purge(owner);
+			afterJournal();
+		}
+	}
+
+	/**
+	 * Whether mutations are journaled. If not, the data is marked dirty for a full save instead.
+	 */
+	private boolean isJournaling() {
+		if (journal == null || Config.REGISTRY.journalCompactionThreshold.get() == 0) {
+			setDirty();
+			return false;
+		}
+		return true;
+	}
+
+	private void afterJournal() {
+		if (journal.pendingSize() >= JOURNAL_BATCH_SIZE) {
+			journal.flush();
+		}
+		compactIfFull();
+	}
+
+	/**
+	 * Mark the data dirty once the journal is large enough,
+	 * so the next world save writes the changed regions and resets the journal.
+	 */
+	private void compactIfFull() {
+		if (journal != null && journal.size() >= Config.REGISTRY.journalCompactionThreshold.get()) {
+			setDirty();
+		}
+	}
+
+	/**
+	 * Called periodically from the server thread.
+	 */
+	public void flushJournal() {
+		completeSave(false);
+		if (journal != null) {
+			journal.flush();
+		}
+	}
+
+	/**
+	 * Wait for any save being written, save the index image if enabled, then close the journal.
+	 */
+	public void closeJournal() {
+		while (pendingSave != null) {
+			completeSave(true);
+		}
+		if (Config.REGISTRY.enableIndexImage.get() && !isIndexImageCurrent && !isMigrating && storage != null) {
+			saveIndexImage();
+		}
+		if (journal != null) {
+			journal.close();
+			journal = null;
+		}
+	}
 	
 	/**
-	 * @param world
+	 * The registry is server-wide, so the data is always held by the overworld, whichever level is given.
+	 * Other dimensions never open their own storage or journal.
+	 * @param world any server level
 	 * @return
 	 */
 	public static ProtectItSavedData get(Level world) {
-		DimensionDataStorage storage = ((ServerLevel)world).getDataStorage();
+		ServerLevel overworld = ((ServerLevel)world).getServer().overworld();
+		DimensionDataStorage storage = overworld.getDataStorage();
 		ProtectItSavedData data = (ProtectItSavedData) storage.computeIfAbsent(
 				ProtectItSavedData::load, ProtectItSavedData::create, PROTECT_IT);
+		if (!data.isStorageLoaded) {
+			data.openStorage(overworld.getServer().getWorldPath(LevelResource.ROOT).resolve("data"));
+		}
 		return data;
 	}
 }
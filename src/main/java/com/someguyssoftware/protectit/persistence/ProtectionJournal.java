@@ -0,0 +1,395 @@
+/*
+ * This file is part of  Protect It.
+ * Copyright (c) 2023 Mark Gottschling (gottsch)
+ *
+ * All rights reserved.
+ *
+ * Protect It is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Protect It is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Protect It.  If not, see <http://www.gnu.org/licenses/lgpl>.
+ */
+package com.someguyssoftware.protectit.persistence;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+import com.someguyssoftware.protectit.ProtectIt;
+import com.someguyssoftware.protectit.claim.Property;
+import com.someguyssoftware.protectit.registry.IBlockProtectionRegistry;
+
+import mod.gottsch.forge.gottschcore.spatial.Coords;
+import mod.gottsch.forge.gottschcore.spatial.ICoords;
+import net.minecraft.nbt.CompoundTag;
+import net.minecraft.nbt.NbtIo;
+
+/**
+ * Append-only binary journal of the registry mutations made since the last full save.
+ * Records are buffered and appended in small batches. The journal is truncated once
+ * the full registry has been saved, and replayed on top of the last full save on load.
+ * <p>
+ * Each record is [type:byte][length:int][payload][crc32:int]. A torn or corrupt record,
+ * ie. from a crash mid-write, ends the replay.
+ *
+ * @author Mark Gottschling on Mar 10, 2023
+ *
+ */
+public class ProtectionJournal {
+	private static final int MAGIC = 0x50494A31; // PIJ1
+	// guards against allocating for a corrupt length
+	private static final int MAX_RECORD_LENGTH = 1 << 20;
+
+	// the full claim state, written on add, rename, whitelist change, etc.
+	public static final byte PUT = 1;
+	// the claims in an area, optionally of one owner
+	public static final byte REMOVE = 2;
+	// all of an owner's claims
+	public static final byte PURGE = 3;
+
+	private final Path path;
+	private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+	private final DataOutputStream pendingOut = new DataOutputStream(pending);
+	private FileChannel channel;
+	// the number of records in the file and pending
+	private int size;
+	private int pendingSize;
+	// the length of the valid records in the file, as found by replay
+	private long validLength = -1;
+	// the end of the journal when the last full save was captured, or -1
+	private long checkpointLength = -1;
+	private int checkpointSize;
+
+	/**
+	 *
+	 * @param path
+	 */
+	public ProtectionJournal(Path path) {
+		this.path = path;
+	}
+
+	/**
+	 * Open the journal for appending, writing the header if the journal is new.
+	 * Anything after the records found by replay, ie. a torn record, is truncated.
+	 * @throws IOException
+	 */
+	public void open() throws IOException {
+		channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		if (validLength <= 0) {
+			channel.truncate(0);
+			writeHeader();
+		}
+		else if (channel.size() > validLength) {
+			ProtectIt.LOGGER.warn("truncating registry journal from {} to {} bytes", channel.size(), validLength);
+			channel.truncate(validLength);
+		}
+		channel.position(channel.size());
+	}
+
+	public void put(Property claim) {
+		CompoundTag tag = new CompoundTag();
+		claim.save(tag);
+		append(PUT, out -> NbtIo.write(tag, out));
+	}
+
+	/**
+	 *
+	 * @param coords1
+	 * @param coords2
+	 * @param owner the owner uuid, or null for any owner
+	 */
+	public void remove(ICoords coords1, ICoords coords2, String owner) {
+		append(REMOVE, out -> {
+			writeCoords(out, coords1);
+			writeCoords(out, coords2);
+			out.writeUTF(owner == null ? "" : owner);
+		});
+	}
+
+	public void purge(String owner) {
+		append(PURGE, out -> out.writeUTF(owner));
+	}
+
+	private void append(byte type, PayloadWriter writer) {
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(bytes);
+			writer.write(out);
+			out.flush();
+			byte[] payload = bytes.toByteArray();
+			pendingOut.writeByte(type);
+			pendingOut.writeInt(payload.length);
+			pendingOut.write(payload);
+			pendingOut.writeInt(checksum(type, payload));
+			size++;
+			pendingSize++;
+		} catch (IOException e) {
+			ProtectIt.LOGGER.error("unable to journal registry mutation:", e);
+		}
+	}
+
+	/**
+	 * Append the pending records to the file.
+	 */
+	public void flush() {
+		if (pendingSize == 0 || channel == null) {
+			return;
+		}
+		try {
+			ByteBuffer buffer = ByteBuffer.wrap(pending.toByteArray());
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			channel.force(false);
+			pending.reset();
+			pendingSize = 0;
+		} catch (IOException e) {
+			ProtectIt.LOGGER.error("unable to flush registry journal:", e);
+		}
+	}
+
+	/**
+	 * Discard all records, ie. after the full registry has been saved.
+	 */
+	public void reset() {
+		checkpointLength = -1;
+		pending.reset();
+		pendingSize = 0;
+		size = 0;
+		if (channel == null) {
+			return;
+		}
+		try {
+			channel.truncate(0);
+			writeHeader();
+			channel.force(false);
+		} catch (IOException e) {
+			ProtectIt.LOGGER.error("unable to reset registry journal:", e);
+		}
+	}
+
+	/**
+	 * Flush and mark the end of the journal, ie. when a full save is captured.
+	 * The records up to the checkpoint are discarded by {@link #truncateToCheckpoint()} once the save is written.
+	 */
+	public void checkpoint() {
+		flush();
+		try {
+			checkpointLength = channel == null ? -1 : channel.size();
+			checkpointSize = size - pendingSize;
+		} catch (IOException e) {
+			ProtectIt.LOGGER.error("unable to checkpoint registry journal:", e);
+			checkpointLength = -1;
+		}
+	}
+
+	/**
+	 * Discard the records up to the checkpoint, keeping any appended since.
+	 * The remaining records are written to a new file that atomically replaces the journal.
+	 */
+	public void truncateToCheckpoint() {
+		if (checkpointLength < 0 || channel == null) {
+			return;
+		}
+		flush();
+		try {
+			long end = channel.size();
+			if (end <= checkpointLength) {
+				reset();
+			}
+			else {
+				ByteBuffer tail = ByteBuffer.allocate((int) (end - checkpointLength));
+				while (tail.hasRemaining()) {
+					if (channel.read(tail, checkpointLength + tail.position()) < 0) {
+						break;
+					}
+				}
+				tail.flip();
+
+				Path tempPath = path.resolveSibling(path.getFileName() + ".tmp");
+				try (FileChannel temp = FileChannel.open(tempPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+					ByteBuffer header = ByteBuffer.allocate(Integer.BYTES).putInt(MAGIC);
+					header.flip();
+					while (header.hasRemaining()) {
+						temp.write(header);
+					}
+					while (tail.hasRemaining()) {
+						temp.write(tail);
+					}
+					temp.force(false);
+				}
+				channel.close();
+				try {
+					move(tempPath, path);
+					size -= checkpointSize;
+				}
+				finally {
+					channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+					channel.position(channel.size());
+				}
+			}
+		} catch (IOException e) {
+			ProtectIt.LOGGER.error("unable to truncate registry journal:", e);
+		}
+		checkpointLength = -1;
+	}
+
+	public void close() {
+		flush();
+		if (channel != null) {
+			try {
+				channel.close();
+			} catch (IOException e) {
+				ProtectIt.LOGGER.error("unable to close registry journal:", e);
+			}
+			channel = null;
+		}
+	}
+
+	/**
+	 *
+	 * @return the number of records since the last reset
+	 */
+	public int size() {
+		return size;
+	}
+
+	public int pendingSize() {
+		return pendingSize;
+	}
+
+	private void writeHeader() throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(Integer.BYTES).putInt(MAGIC);
+		header.flip();
+		while (header.hasRemaining()) {
+			channel.write(header);
+		}
+	}
+
+	/**
+	 * Apply the journal's records to the registry. Must be called before open().
+	 * @param registry
+	 * @return the number of records replayed
+	 */
+	public int replay(IBlockProtectionRegistry registry) {
+		validLength = -1;
+		if (!Files.exists(path)) {
+			return 0;
+		}
+		int count = 0;
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+			if (in.readInt() != MAGIC) {
+				ProtectIt.LOGGER.warn("registry journal {} has an unknown format, skipping replay", path);
+				return 0;
+			}
+			validLength = Integer.BYTES;
+			while (true) {
+				byte type = in.readByte();
+				int length = in.readInt();
+				if (length < 0 || length > MAX_RECORD_LENGTH) {
+					ProtectIt.LOGGER.warn("registry journal has a corrupt record, replayed {} records", count);
+					break;
+				}
+				byte[] payload = new byte[length];
+				in.readFully(payload);
+				if (in.readInt() != checksum(type, payload)) {
+					ProtectIt.LOGGER.warn("registry journal has a corrupt record, replayed {} records", count);
+					break;
+				}
+				apply(registry, type, new DataInputStream(new ByteArrayInputStream(payload)));
+				validLength += 1 + Integer.BYTES + length + Integer.BYTES;
+				count++;
+			}
+		}
+		catch (EOFException e) {
+			// end of the journal, or a torn record from a crash mid-write
+		}
+		catch (IOException e) {
+			ProtectIt.LOGGER.error("unable to replay registry journal:", e);
+		}
+		size = count;
+		return count;
+	}
+
+	private static void apply(IBlockProtectionRegistry registry, byte type, DataInputStream in) throws IOException {
+		switch (type) {
+		case PUT:
+			Property claim = Property.of(NbtIo.read(in));
+			Property existing = registry.getClaimByUuid(claim.getUuid());
+			if (existing != null) {
+				registry.removeProtection(existing.getBox().getMinCoords(), existing.getBox().getMaxCoords(), existing.getOwner().getUuid());
+			}
+			registry.addProtection(claim);
+			break;
+		case REMOVE:
+			ICoords coords1 = readCoords(in);
+			ICoords coords2 = readCoords(in);
+			String owner = in.readUTF();
+			if (owner.isEmpty()) {
+				registry.removeProtection(coords1, coords2);
+			}
+			else {
+				registry.removeProtection(coords1, coords2, owner);
+			}
+			break;
+		case PURGE:
+			registry.removeProtection(in.readUTF());
+			break;
+		default:
+			ProtectIt.LOGGER.warn("unknown registry journal record type -> {}", type);
+		}
+	}
+
+	/**
+	 * Move the file over the target, atomically if supported.
+	 */
+	static void move(Path source, Path target) throws IOException {
+		try {
+			Files.move(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	private static void writeCoords(DataOutputStream out, ICoords coords) throws IOException {
+		out.writeInt(coords.getX());
+		out.writeInt(coords.getY());
+		out.writeInt(coords.getZ());
+	}
+
+	private static ICoords readCoords(DataInputStream in) throws IOException {
+		return new Coords(in.readInt(), in.readInt(), in.readInt());
+	}
+
+	private static int checksum(byte type, byte[] payload) {
+		CRC32 crc = new CRC32();
+		crc.update(type);
+		crc.update(payload);
+		return (int) crc.getValue();
+	}
+
+	@FunctionalInterface
+	private interface PayloadWriter {
+		void write(DataOutputStream out) throws IOException;
+	}
+}
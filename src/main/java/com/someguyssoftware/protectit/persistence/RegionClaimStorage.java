@@ -0,0 +1,161 @@
+/*
+ * This file is part of  Protect It.
+ * Copyright (c) 2023 Mark Gottschling (gottsch)
+ *
+ * All rights reserved.
+ *
+ * Protect It is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Protect It is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Protect It.  If not, see <http://www.gnu.org/licenses/lgpl>.
+ */
+package com.someguyssoftware.protectit.persistence;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import com.someguyssoftware.protectit.ProtectIt;
+import com.someguyssoftware.protectit.claim.Property;
+
+import net.minecraft.world.level.ChunkPos;
+
+/**
+ * Claims persisted as one file per 32x32 chunk region, named like vanilla region files, ie. r.0.-1.claims.
+ * Each claim is stored in the region containing its box min coords, so a claim that spans regions is stored once.
+ * Only changed regions are written, and the regions are decoded in parallel on load.
+ *
+ * @author Mark Gottschling on Mar 11, 2023
+ *
+ */
+public class RegionClaimStorage {
+	private static final String EXTENSION = ".claims";
+	private static final String CORRUPT_EXTENSION = ".corrupt";
+	private static final Pattern FILE_NAME = Pattern.compile("r\\.(-?\\d+)\\.(-?\\d+)\\" + EXTENSION);
+
+	private final Path directory;
+
+	/**
+	 *
+	 * @param directory
+	 */
+	public RegionClaimStorage(Path directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * Decode every region. A region that can't be read is moved aside, so the next write of the region
+	 * does not replace it, and its claims are skipped.
+	 * @return the claims of every region
+	 */
+	public List<Property> loadAll() {
+		List<Path> files = list();
+		if (files.isEmpty()) {
+			return Collections.emptyList();
+		}
+		List<Property> claims = files.parallelStream()
+				.map(this::read)
+				.flatMap(List::stream)
+				.collect(Collectors.toList());
+		ProtectIt.LOGGER.debug("loaded {} claims from {} regions", claims.size(), files.size());
+		return claims;
+	}
+
+	private List<Property> read(Path file) {
+		try {
+			return ClaimCodec.decode(Files.readAllBytes(file));
+		} catch (Exception e) {
+			ProtectIt.LOGGER.error("unable to read claim region {}:", file.getFileName(), e);
+			moveAside(file);
+			return Collections.emptyList();
+		}
+	}
+
+	/**
+	 * Rename an unreadable region to r.X.Z.claims.corrupt, keeping any earlier corrupt copy.
+	 * If it can't be moved, the load fails, rather than losing its claims on the next write.
+	 * @param file
+	 */
+	private void moveAside(Path file) {
+		Path corruptPath = file.resolveSibling(file.getFileName() + CORRUPT_EXTENSION);
+		for (int n = 1; Files.exists(corruptPath); n++) {
+			corruptPath = file.resolveSibling(file.getFileName() + CORRUPT_EXTENSION + "." + n);
+		}
+		try {
+			Files.move(file, corruptPath);
+			ProtectIt.LOGGER.warn("moved unreadable claim region to {}, its claims are not loaded", corruptPath.getFileName());
+		} catch (IOException e) {
+			throw new UncheckedIOException("unable to move aside unreadable claim region " + file.getFileName(), e);
+		}
+	}
+
+	/**
+	 * Write the region's claims, or delete the region if it has none.
+	 * @param region the packed region pos
+	 * @param claims
+	 * @throws IOException
+	 */
+	public void write(long region, List<Property> claims) throws IOException {
+		Path path = directory.resolve(fileName(region));
+		if (claims.isEmpty()) {
+			Files.deleteIfExists(path);
+			return;
+		}
+		Files.createDirectories(directory);
+		// write beside the file and move over it, so a crash mid-write never leaves a partial region
+		Path tempPath = path.resolveSibling(path.getFileName() + ".tmp");
+		Files.write(tempPath, ClaimCodec.encode(claims));
+		ProtectionJournal.move(tempPath, path);
+	}
+
+	/**
+	 * Delete every region, ie. before the regions are rewritten from an older save format.
+	 * @throws IOException
+	 */
+	public void clear() throws IOException {
+		for (Path file : list()) {
+			Files.deleteIfExists(file);
+		}
+	}
+
+	private List<Path> list() {
+		List<Path> files = new ArrayList<>();
+		if (!Files.isDirectory(directory)) {
+			return files;
+		}
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+			stream.forEach(file -> {
+				if (FILE_NAME.matcher(file.getFileName().toString()).matches()) {
+					files.add(file);
+				}
+			});
+		} catch (IOException e) {
+			ProtectIt.LOGGER.error("unable to list claim regions:", e);
+		}
+		return files;
+	}
+
+	/**
+	 *
+	 * @param region
+	 * @return the file name of the region, ie. r.0.-1.claims
+	 */
+	public static String fileName(long region) {
+		return "r." + ChunkPos.getX(region) + "." + ChunkPos.getZ(region) + EXTENSION;
+	}
+}
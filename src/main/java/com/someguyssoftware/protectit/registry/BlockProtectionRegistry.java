@@ -19,25 +19,49 @@
  */
 package com.someguyssoftware.protectit.registry;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Predicate;
+import java.util.stream.IntStream;
 
 import org.apache.commons.lang3.StringUtils;
 
 import com.someguyssoftware.protectit.ProtectIt;
 import com.someguyssoftware.protectit.claim.Property;
+import com.someguyssoftware.protectit.persistence.ClaimCodec;
+import com.someguyssoftware.protectit.registry.cache.IDomainListener;
+import com.someguyssoftware.protectit.registry.cache.SectionCache;
+import com.someguyssoftware.protectit.registry.cache.SectionSummary;
 import com.someguyssoftware.protectit.registry.bst.IdentifierData;
 import com.someguyssoftware.protectit.registry.bst.Interval;
 import com.someguyssoftware.protectit.registry.bst.OwnershipData;
 import com.someguyssoftware.protectit.registry.bst.ProtectedIntervalTree;
+import com.someguyssoftware.protectit.registry.packed.MappedIntervalIndex;
 
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
 import mod.gottsch.forge.gottschcore.spatial.Box;
+import mod.gottsch.forge.gottschcore.spatial.Coords;
 import mod.gottsch.forge.gottschcore.spatial.ICoords;
+import net.minecraft.core.BlockPos;
 import net.minecraft.nbt.CompoundTag;
 import net.minecraft.nbt.ListTag;
+import net.minecraft.nbt.Tag;
+import net.minecraft.world.level.ChunkPos;
 
 /**
  * 
@@ -46,15 +70,86 @@ import net.minecraft.nbt.ListTag;
  */
 public class BlockProtectionRegistry implements IBlockProtectionRegistry {
 
+	// legacy nbt list of claims, only read to migrate older saves
 	private static final String CLAIMS_KEY = "claims";
+	private static final String CLAIM_DATA_KEY = "claimData";
 
-	private final Map<String, List<Property>> CLAIMS_BY_OWNER = new HashMap<>(); 
-	private final Map<ICoords, Property> CLAIMS_BY_COORDS = new HashMap<>();
+	// the max number of candidate claims to test each block against before falling back to index lookups
+	private static final int MAX_CANDIDATES = 32;
+	// the number of blocks at which filtering is split across the common fork-join pool
+	private static final int PARALLEL_THRESHOLD = 4096;
+	private static final int DEFAULT_SECTION_CACHE_SIZE = 4096;
+	// block to region, 512 blocks per region
+	private static final int REGION_SHIFT = 9;
+	// the most chunks a no-spawn claim marks one by one, larger claims mark their regions instead
+	private static final int MAX_NO_SPAWN_CHUNKS = 256;
+
+	/*
+	 * primary index of claims by property uuid. the owner and coords indexes are keyed
+	 * by values held on the claim itself (owner uuid, box min coords), so a claim can be
+	 * removed from every index without searching.
+	 * these maps are read without the lock, ie. from the client thread of an integrated server,
+	 * so they are concurrent, and each owner's map is synchronized.
+	 */
+	private final Map<UUID, Property> CLAIMS_BY_UUID = new ConcurrentHashMap<>();
+	// claims by owner, in insertion order
+	private final Map<String, Map<UUID, Property>> CLAIMS_BY_OWNER = new ConcurrentHashMap<>(); 
+	private final Map<ICoords, Property> CLAIMS_BY_COORDS = new ConcurrentHashMap<>();
+	// the number of claims that disable mob spawning in each chunk, by packed chunk pos
+	private final Long2IntOpenHashMap NO_SPAWN_CHUNKS = new Long2IntOpenHashMap();
+	// the number of large claims that disable mob spawning in each region, by packed region pos
+	private final Long2IntOpenHashMap NO_SPAWN_REGIONS = new Long2IntOpenHashMap();
+	// claims by the region that stores them, ie. the region of the box min coords, by packed region pos.
+	// only read with the lock held, by the save snapshot
+	private final Long2ObjectOpenHashMap<Map<UUID, Property>> CLAIMS_BY_REGION = new Long2ObjectOpenHashMap<>();
+	// regions changed since the last snapshot
+	private final LongOpenHashSet DIRTY_REGIONS = new LongOpenHashSet();
+
+	/**
+	 * Spatial index for fast lookups for block access/mutation actions.
+	 * Only replaced on load by a mapped index image, which is replaced by its copy on the first change.
+	 */
+	private volatile IProtectionIndex index;
+
+	/**
+	 * Section summaries in front of the index for single block lookups, or null if disabled
+	 */
+	private final SectionCache sections;
+
+	/**
+	 * Incremented on every change to the claims
+	 */
+	private final AtomicLong epoch = new AtomicLong();
+
+	/**
+	 * Told of the areas invalidated in the section cache
+	 */
+	private final List<IDomainListener> domainListeners = new CopyOnWriteArrayList<>();
+
+	/**
+	 * 
+	 */
+	public BlockProtectionRegistry() {
+		this(new ProtectedIntervalTree());
+	}
+
+	/**
+	 * 
+	 * @param index
+	 */
+	public BlockProtectionRegistry(IProtectionIndex index) {
+		this(index, DEFAULT_SECTION_CACHE_SIZE);
+	}
 
 	/**
-	 * Interval Binary Search Tree for fast lookups for block access/mutation actions
+	 * 
+	 * @param index
+	 * @param sectionCacheSize the max number of cached chunk sections, 0 to disable
 	 */
-	private final ProtectedIntervalTree tree = new ProtectedIntervalTree();
+	public BlockProtectionRegistry(IProtectionIndex index, int sectionCacheSize) {
+		this.index = index;
+		this.sections = sectionCacheSize > 0 ? new SectionCache(sectionCacheSize, this::summarize) : null;
+	}
 
 	@Override
 	public void addProtection(ICoords coords) {
@@ -63,7 +158,9 @@ public class BlockProtectionRegistry implements IBlockProtectionRegistry {
 
 	@Override
 	public void addProtection(ICoords coords1, ICoords coords2) {
-		tree.insert(new Interval(coords1, coords2));
+		Interval interval = new Interval(coords1, coords2);
+		index.insert(interval);
+		invalidate(interval);
 	}
 
 	@Override
@@ -84,22 +181,135 @@ public class BlockProtectionRegistry implements IBlockProtectionRegistry {
 	public void addProtection(Property claim) {
 		ProtectIt.LOGGER.debug("adding claim protection -> {}", claim);
 		
-		// add claims by owner
-		List<Property> claims = null;
-		// TODO make a method
-		if (!CLAIMS_BY_OWNER.containsKey(claim.getOwner().getUuid())) {
-			// create new list entry
-			CLAIMS_BY_OWNER.put(claim.getOwner().getUuid(), new ArrayList<>());
-		}
-		claims = CLAIMS_BY_OWNER.get(claim.getOwner().getUuid());
-		claims.add(claim);
+		// add to claim maps
+		indexClaim(claim);
 		
-		// add claims by coords
+		// add to index
+		Interval interval = toInterval(claim);
+		index.insert(interval);
+		invalidate(interval);
+		ProtectIt.LOGGER.debug("size of index -> {}", index.size());
+	}
+
+	/**
+	 * Add a batch of claims, ie. a full registry sent to the client, and rebuild the index once
+	 * instead of inserting each claim.
+	 */
+	@Override
+	public void addProtections(List<Property> claims) {
+		List<Interval> intervals = new ArrayList<>(index.size() + claims.size());
+		index.list(intervals);
+		claims.forEach(claim -> {
+			indexClaim(claim);
+			intervals.add(toInterval(claim));
+		});
+		index.build(intervals);
+		clearSections();
+		ProtectIt.LOGGER.debug("added {} claims, size of index -> {}", claims.size(), index.size());
+	}
+
+	/**
+	 * Rebuild the index bottom-up from its current contents.
+	 */
+	@Override
+	public void rebuildIndex() {
+		List<Interval> intervals = new ArrayList<>(index.size());
+		index.list(intervals);
+		index.build(intervals);
+	}
+
+	private static Interval toInterval(Property claim) {
+		return new Interval(claim.getBox().getMinCoords(), claim.getBox().getMaxCoords(), new OwnershipData(claim.getOwner().getUuid(), claim.getOwner().getName()));
+	}
+
+	/**
+	 * Add the claim to the uuid, owner and coords maps, replacing any claim with the same uuid.
+	 * @param claim
+	 */
+	private void indexClaim(Property claim) {
+		claim.register(ProtectionRegistries.players());
+		Property previous = CLAIMS_BY_UUID.put(claim.getUuid(), claim);
+		if (previous != null && previous != claim) {
+			unindexClaim(previous);
+			CLAIMS_BY_UUID.put(claim.getUuid(), claim);
+		}
+		CLAIMS_BY_OWNER.computeIfAbsent(claim.getOwner().getUuid(), key -> Collections.synchronizedMap(new LinkedHashMap<>())).put(claim.getUuid(), claim);
 		CLAIMS_BY_COORDS.put(claim.getBox().getMinCoords(), claim);
-		
-		// add to BST
-		tree.insert(new Interval(claim.getBox().getMinCoords(), claim.getBox().getMaxCoords(), new OwnershipData(claim.getOwner().getUuid(), claim.getOwner().getName())));
-		ProtectIt.LOGGER.debug("size of tree -> {}", getProtections(claim.getBox().getMinCoords(), claim.getBox().getMaxCoords()).size());
+		long region = regionOf(claim);
+		CLAIMS_BY_REGION.computeIfAbsent(region, key -> new LinkedHashMap<>()).put(claim.getUuid(), claim);
+		DIRTY_REGIONS.add(region);
+		if (!claim.isMobSpawning() && previous != claim) {
+			updateNoSpawnChunks(claim, 1);
+		}
+	}
+
+	/**
+	 * Remove the claim from the uuid, owner and coords maps.
+	 * @param claim
+	 */
+	private void unindexClaim(Property claim) {
+		CLAIMS_BY_UUID.remove(claim.getUuid(), claim);
+		CLAIMS_BY_COORDS.remove(claim.getBox().getMinCoords(), claim);
+		if (!claim.isMobSpawning()) {
+			updateNoSpawnChunks(claim, -1);
+		}
+		unindexRegion(claim);
+		CLAIMS_BY_OWNER.computeIfPresent(claim.getOwner().getUuid(), (key, claims) -> {
+			claims.remove(claim.getUuid(), claim);
+			return claims.isEmpty() ? null : claims;
+		});
+	}
+
+	private void unindexRegion(Property claim) {
+		long region = regionOf(claim);
+		Map<UUID, Property> claims = CLAIMS_BY_REGION.get(region);
+		if (claims != null && claims.remove(claim.getUuid(), claim)) {
+			if (claims.isEmpty()) {
+				CLAIMS_BY_REGION.remove(region);
+			}
+			DIRTY_REGIONS.add(region);
+		}
+	}
+
+	/**
+	 * A claim is stored in exactly one region, the one containing its box min coords.
+	 * Regions are 32x32 chunks, the same as vanilla region files.
+	 * @param claim
+	 * @return the packed region pos
+	 */
+	public static long regionOf(Property claim) {
+		return ChunkPos.asLong(claim.getBox().getMinCoords().getX() >> REGION_SHIFT, claim.getBox().getMinCoords().getZ() >> REGION_SHIFT);
+	}
+
+	/**
+	 * Add the count to every chunk the claim spans, or to every region if it spans more than
+	 * MAX_NO_SPAWN_CHUNKS chunks, so a large claim marks a bounded number of entries.
+	 * @param claim
+	 * @param count
+	 */
+	private void updateNoSpawnChunks(Property claim, int count) {
+		int minChunkX = claim.getBox().getMinCoords().getX() >> 4;
+		int minChunkZ = claim.getBox().getMinCoords().getZ() >> 4;
+		int maxChunkX = claim.getBox().getMaxCoords().getX() >> 4;
+		int maxChunkZ = claim.getBox().getMaxCoords().getZ() >> 4;
+		if ((long)(maxChunkX - minChunkX + 1) * (maxChunkZ - minChunkZ + 1) > MAX_NO_SPAWN_CHUNKS) {
+			int shift = REGION_SHIFT - 4;
+			updateNoSpawnCounts(NO_SPAWN_REGIONS, minChunkX >> shift, minChunkZ >> shift, maxChunkX >> shift, maxChunkZ >> shift, count);
+		}
+		else {
+			updateNoSpawnCounts(NO_SPAWN_CHUNKS, minChunkX, minChunkZ, maxChunkX, maxChunkZ, count);
+		}
+	}
+
+	private static void updateNoSpawnCounts(Long2IntOpenHashMap counts, int minX, int minZ, int maxX, int maxZ, int count) {
+		for (int x = minX; x <= maxX; x++) {
+			for (int z = minZ; z <= maxZ; z++) {
+				long key = ChunkPos.asLong(x, z);
+				if (counts.addTo(key, count) + count <= 0) {
+					counts.remove(key);
+				}
+			}
+		}
 	}
 
 	/**
@@ -113,7 +323,7 @@ public class BlockProtectionRegistry implements IBlockProtectionRegistry {
 	public List<Interval> addWhitelist(ICoords coords1, ICoords coords2, PlayerData owner, PlayerData data) {
 		List<Interval> whitelisted = new ArrayList<>();
 		ProtectIt.LOGGER.debug("adding whitelist -> {} to {}", coords1.toShortString(), coords2.toShortString());
-		List<Interval> list = tree.getOverlapping(tree.getRoot(), new Interval(coords1, coords2), false);
+		List<Interval> list = index.getOverlapping(new Interval(coords1, coords2), false, true);
 		list.forEach(i -> {
 			if (i.getData() != null && i.getData().getOwner().getUuid().equalsIgnoreCase(owner.getUuid())) {
 				// TODO check that whitelist doesn't already contain player
@@ -121,7 +331,6 @@ public class BlockProtectionRegistry implements IBlockProtectionRegistry {
 				whitelisted.add(i);
 			}
 		});
-		ProtectIt.LOGGER.debug("size of tree -> {}", getProtections(coords1, coords2).size());
 		return whitelisted;
 	}
 
@@ -133,13 +342,14 @@ public class BlockProtectionRegistry implements IBlockProtectionRegistry {
 	@Override
 	public void removeProtection(ICoords coords1, ICoords coords2) {
 //		ProtectIt.LOGGER.debug("in remove protection for c1 -> {}, c2 -> {}", coords1, coords2);
-		List<Box> protections = getProtections(coords1, coords2);
+		List<Interval> intervals = index.getOverlapping(new Interval(coords1, coords2), false, true);
+		List<Box> protections = new ArrayList<>();
+		intervals.forEach(i -> protections.add(i.toBox()));
 //		ProtectIt.LOGGER.debug("found protections -> {}", protections);
 		removeClaims(protections);
-		protections.forEach(p -> {
-			tree.delete(new Interval(p.getMinCoords(), p.getMaxCoords()));
-		});
-		
+		index.deleteAll(intervals);
+		intervals.forEach(this::invalidate);
+
 	}
 
 	/**
@@ -149,14 +359,11 @@ public class BlockProtectionRegistry implements IBlockProtectionRegistry {
 	private void removeClaims(final List<Box> protections) {
 		if (!protections.isEmpty()) {
 			protections.forEach(p -> {
-				Property claim = CLAIMS_BY_COORDS.remove(p.getMinCoords());
-//				ProtectIt.LOGGER.debug("claim was removed from BY_COORDS -> {}", claim);
-//				ProtectIt.LOGGER.debug("claims after removal from BY_COORDS -> {}", CLAIMS_BY_COORDS);
-				CLAIMS_BY_OWNER.values().forEach(l -> {
-					l.removeIf(c -> c.getBox().getMinCoords().equals(p.getMinCoords()));
-				});
-//				ProtectIt.LOGGER.debug("claims_by_owner -> {}", CLAIMS_BY_OWNER);
-
+				Property claim = CLAIMS_BY_COORDS.get(p.getMinCoords());
+				if (claim != null) {
+					unindexClaim(claim);
+				}
+//				ProtectIt.LOGGER.debug("claim was removed -> {}", claim);
 			});
 		}
 	}
@@ -164,13 +371,14 @@ public class BlockProtectionRegistry implements IBlockProtectionRegistry {
 	@Override
 	public void removeProtection(ICoords coords1, ICoords coords2, String uuid) {
 //		ProtectIt.LOGGER.debug("in remove protection for c1 -> {}, c2 -> {}, uuid -> {}", coords1, coords2, uuid);
-		List<Box> protections = getProtections(coords1, coords2);
+		List<Interval> intervals = index.getOverlapping(new Interval(coords1, coords2), false, true);
+		List<Box> protections = new ArrayList<>();
+		intervals.removeIf(i -> i.getData() == null || !i.getData().getOwner().getUuid().equalsIgnoreCase(uuid));
+		intervals.forEach(i -> protections.add(i.toBox()));
+		index.deleteAll(intervals);
+		intervals.forEach(this::invalidate);
 //		ProtectIt.LOGGER.debug("found protections -> {}", protections);
 		removeClaims(protections, uuid);
-		protections.forEach(p -> {
-			List<Interval> intervals = tree.delete(new Interval(p.getMinCoords(), p.getMaxCoords()), uuid);
-//			ProtectIt.LOGGER.debug("removed from tree -> {}", intervals);
-		});
 	}
 
 	private void removeClaims(final List<Box> protections, final String uuid) {
@@ -180,30 +388,37 @@ public class BlockProtectionRegistry implements IBlockProtectionRegistry {
 				Property claim = getClaimByCoords(p.getMinCoords());
 //				ProtectIt.LOGGER.debug("claim -> {}", claim);
 				if (claim != null && claim.getOwner().getUuid().equalsIgnoreCase(uuid)) {
-					CLAIMS_BY_COORDS.remove(p.getMinCoords());
-//					ProtectIt.LOGGER.debug("claim was removed from BY_COORDS -> {}", claim);
-				}
-				List<Property> claims = CLAIMS_BY_OWNER.get(uuid);
-				if (claims != null && !claims.isEmpty()) {
-					claims.removeIf(c -> c.getBox().getMinCoords().equals(p.getMinCoords()));
+					unindexClaim(claim);
+//					ProtectIt.LOGGER.debug("claim was removed -> {}", claim);
 				}
 			});
 		}
 	}
 
+	/**
+	 * Purge all of the owner's claims. The owner's claims are taken from the owner map,
+	 * so the index is not searched, and the intervals are removed from the index in a single mutation.
+	 */
 	@Override
 	public void removeProtection(String uuid) {
-		// walk the entire tree until it returns null
-		Interval interval = null;
-		do {
-			interval = tree.delete(tree.getRoot(), p -> p.getData().getOwner().getUuid().equalsIgnoreCase(uuid));
-			ProtectIt.LOGGER.debug("remove by uuid interval -> {}", interval);
-		} while (interval != null);
-		// TODO wouldn't have to do do-while if used tree.delete2()
-		
 		//delete from CLAIMs registries
-		CLAIMS_BY_OWNER.remove(uuid);		
-		CLAIMS_BY_COORDS.entrySet().removeIf(entry -> entry.getValue().getOwner().getUuid().equalsIgnoreCase(uuid));
+		Map<UUID, Property> claims = uuid == null ? null : CLAIMS_BY_OWNER.remove(uuid);
+		if (claims == null) {
+			return;
+		}
+		List<Interval> intervals = new ArrayList<>(claims.size());
+		getClaims(claims).forEach(claim -> {
+			CLAIMS_BY_UUID.remove(claim.getUuid(), claim);
+			CLAIMS_BY_COORDS.remove(claim.getBox().getMinCoords(), claim);
+			if (!claim.isMobSpawning()) {
+				updateNoSpawnChunks(claim, -1);
+			}
+			unindexRegion(claim);
+			intervals.add(new Interval(claim.getBox().getMinCoords(), claim.getBox().getMaxCoords()));
+		});
+		index.deleteAll(intervals);
+		intervals.forEach(this::invalidate);
+		ProtectIt.LOGGER.debug("removed by uuid intervals -> {}", intervals.size());
 	}
 
 	/**
@@ -221,11 +436,20 @@ public class BlockProtectionRegistry implements IBlockProtectionRegistry {
 	 */
 	@Override
 	public List<Property> getProtections(String uuid) {
-		List<Property> claims = CLAIMS_BY_OWNER.get(uuid);
+		Map<UUID, Property> claims = uuid == null ? null : CLAIMS_BY_OWNER.get(uuid);
 		if (claims == null) {
-			claims = new ArrayList<>();
+			return new ArrayList<>();
+		}
+		return getClaims(claims);
+	}
+
+	/**
+	 * A copy of an owner's claims, taken while holding the owner map's lock.
+	 */
+	private static List<Property> getClaims(Map<UUID, Property> claims) {
+		synchronized (claims) {
+			return new ArrayList<>(claims.values());
 		}
-		return claims;
 	}
 
 	/**
@@ -249,7 +473,7 @@ public class BlockProtectionRegistry implements IBlockProtectionRegistry {
 	
 	@Override
 	public List<Box> getProtections(ICoords coords1, ICoords coords2, boolean findFast, boolean includeBorder) {
-		List<Interval> protections = tree.getOverlapping(tree.getRoot(), new Interval(coords1, coords2), findFast, includeBorder);
+		List<Interval> protections = index.getOverlapping(new Interval(coords1, coords2), findFast, includeBorder);
 		List<Box> boxes = new ArrayList<>();
 		protections.forEach(p -> {
 			boxes.add(p.toBox());
@@ -306,7 +530,7 @@ public class BlockProtectionRegistry implements IBlockProtectionRegistry {
 	 */
 	@Override
 	public boolean isProtectedAgainst(ICoords coords1, ICoords coords2, String uuid) {
-		List<Interval> protections = tree.getOverlapping(tree.getRoot(), new Interval(coords1, coords2), true);
+		List<Interval> protections = index.getOverlapping(new Interval(coords1, coords2), true, true);
 		if (protections.isEmpty()) {
 //			ProtectIt.LOGGER.debug("empty protections - not protected");
 			return false;
@@ -326,20 +550,9 @@ public class BlockProtectionRegistry implements IBlockProtectionRegistry {
 				
 				// get the claim
 				Property claim = CLAIMS_BY_COORDS.get(p.getCoords1());
-				ProtectIt.LOGGER.debug("isProtectedAgainst.claimsByCoords -> {}, claim -> {}", p.getCoords1(), claim);
-				// cycle through whitelist
-//				boolean isWhitelist = false;
-				if (!claim.getWhitelist().isEmpty()) {
-					ProtectIt.LOGGER.debug("isProtectedAgainst whitelist is not null");
-//					for(IdentifierData id : p.getData().getWhitelist()) {
-					for (PlayerData id : claim.getWhitelist()) {
-						ProtectIt.LOGGER.debug("isProtectedAgainst compare whitelist id -> {} to uuid -> {}", id.getUuid(), uuid);
-						if (id.getUuid().equalsIgnoreCase(uuid)) {
-//							isWhitelist = true;
-//							break;
-							return false;
-						}
-					}
+				// check whitelist
+				if (claim != null && claim.isWhitelisted(ProtectionRegistries.players().getId(uuid))) {
+					return false;
 				}
 				return true;
 //				if (!isWhitelist) {
@@ -351,11 +564,450 @@ public class BlockProtectionRegistry implements IBlockProtectionRegistry {
 		return false;
 	}
 
+	@Override
+	public boolean isProtected(int x, int y, int z) {
+		if (sections != null) {
+			SectionSummary summary = sections.get(x, y, z);
+			if (!summary.isMixed()) {
+				return !summary.isUnclaimed();
+			}
+		}
+		return index.getContaining(x, y, z) != null;
+	}
+
+	@Override
+	public boolean isProtectedAgainst(int x, int y, int z, UUID player) {
+		Interval interval = null;
+		Property claim = null;
+		int ownerId;
+		SectionSummary summary = sections == null ? SectionSummary.MIXED : sections.get(x, y, z);
+		if (summary.isUnclaimed()) {
+			return false;
+		}
+		else if (summary.isMixed()) {
+			// the packed index reads the owner id from the row, without touching the interval
+			ownerId = index.getOwnerContaining(x, y, z);
+			if (ownerId == IProtectionIndex.NOT_CONTAINED) {
+				return false;
+			}
+		}
+		else {
+			interval = summary.getInterval();
+			claim = summary.getClaim();
+			ownerId = interval.getData().getOwner().getId();
+		}
+		// short circuit if no owner or owner
+		int playerId = ProtectionRegistries.players().getId(player);
+		if (ownerId == PlayerDictionary.NO_ID || playerId == PlayerDictionary.NO_ID) {
+			return true;
+		}
+		if (ownerId == playerId) {
+			return false;
+		}
+
+		// check the claim's whitelist
+		if (claim == null) {
+			if (interval == null) {
+				interval = index.getContaining(x, y, z);
+			}
+			claim = interval == null ? null : CLAIMS_BY_COORDS.get(interval.getCoords1());
+		}
+		return claim == null || !claim.isWhitelisted(playerId);
+	}
+
+	@Override
+	public Property getClaim(int x, int y, int z) {
+		if (sections != null) {
+			SectionSummary summary = sections.get(x, y, z);
+			if (summary.isUnclaimed()) {
+				return null;
+			}
+			if (!summary.isMixed()) {
+				return summary.getClaim();
+			}
+		}
+		Interval interval = index.getContaining(x, y, z);
+		return interval == null ? null : CLAIMS_BY_COORDS.get(interval.getCoords1());
+	}
+
+	@Override
+	public long getEpoch() {
+		return epoch.get();
+	}
+
+	@Override
+	public void markChanged() {
+		epoch.incrementAndGet();
+	}
+
+	/**
+	 * Summarize a chunk section from the index.
+	 */
+	private SectionSummary summarize(int sectionX, int sectionY, int sectionZ) {
+		int x = sectionX << 4;
+		int y = sectionY << 4;
+		int z = sectionZ << 4;
+		Interval section = new Interval(new Coords(x, y, z), new Coords(x + 15, y + 15, z + 15));
+		List<Interval> intervals = index.getOverlapping(section, false, true);
+		if (intervals.isEmpty()) {
+			return SectionSummary.UNCLAIMED;
+		}
+		if (intervals.size() == 1) {
+			Interval interval = intervals.get(0);
+			if (interval.contains(x, y, z) && interval.contains(x + 15, y + 15, z + 15)) {
+				return new SectionSummary(interval, CLAIMS_BY_COORDS.get(interval.getCoords1()));
+			}
+		}
+		return SectionSummary.MIXED;
+	}
+
+	/**
+	 * Invalidate the cached sections that the interval touches.
+	 * Must be called after the index is mutated.
+	 */
+	private void invalidate(Interval interval) {
+		epoch.incrementAndGet();
+		if (sections != null) {
+			sections.invalidate(interval.getStart(), interval.getStartY(), interval.getStartZ(),
+					interval.getEnd(), interval.getEndY(), interval.getEndZ());
+		}
+		for (IDomainListener listener : domainListeners) {
+			listener.invalidate(interval.getStart(), interval.getStartY(), interval.getStartZ(),
+					interval.getEnd(), interval.getEndY(), interval.getEndZ());
+		}
+	}
+
+	private void clearSections() {
+		epoch.incrementAndGet();
+		if (sections != null) {
+			sections.clear();
+		}
+		domainListeners.forEach(IDomainListener::clear);
+	}
+
+	@Override
+	public void addDomainListener(IDomainListener listener) {
+		domainListeners.add(listener);
+	}
+
+	@Override
+	public void removeDomainListener(IDomainListener listener) {
+		domainListeners.remove(listener);
+	}
+
+	/**
+	 * Queries the index once with the bounding box of the blocks, then tests each block against
+	 * the small set of candidate claims. Very large lists are tested in parallel against
+	 * immutable candidate bounds or an index snapshot.
+	 */
+	@Override
+	public void removeProtected(List<BlockPos> blocks) {
+		if (blocks.isEmpty()) {
+			return;
+		}
+		List<Interval> candidates = index.getOverlapping(getBounds(blocks.get(0), blocks), false, true);
+		if (candidates.isEmpty()) {
+			return;
+		}
+
+		BlockTest test;
+		if (candidates.size() <= MAX_CANDIDATES) {
+			int[] bounds = new int[candidates.size() * 6];
+			for (int i = 0; i < candidates.size(); i++) {
+				Interval interval = candidates.get(i);
+				bounds[i * 6] = interval.getStart();
+				bounds[i * 6 + 1] = interval.getStartY();
+				bounds[i * 6 + 2] = interval.getStartZ();
+				bounds[i * 6 + 3] = interval.getEnd();
+				bounds[i * 6 + 4] = interval.getEndY();
+				bounds[i * 6 + 5] = interval.getEndZ();
+			}
+			test = (x, y, z) -> isInside(bounds, x, y, z);
+		}
+		else {
+			IProtectionIndex snapshot = index.snapshot();
+			test = (x, y, z) -> snapshot.getContaining(x, y, z) != null;
+		}
+
+		if (blocks.size() < PARALLEL_THRESHOLD) {
+			blocks.removeIf(pos -> test.isProtected(pos.getX(), pos.getY(), pos.getZ()));
+			return;
+		}
+
+		boolean[] isProtected = new boolean[blocks.size()];
+		IntStream.range(0, blocks.size()).parallel().forEach(i -> {
+			BlockPos pos = blocks.get(i);
+			isProtected[i] = test.isProtected(pos.getX(), pos.getY(), pos.getZ());
+		});
+		int count = 0;
+		for (int i = 0; i < isProtected.length; i++) {
+			if (!isProtected[i]) {
+				blocks.set(count++, blocks.get(i));
+			}
+		}
+		blocks.subList(count, blocks.size()).clear();
+	}
+
+	/**
+	 * Queries the index once with the bounding box of the origin and the positions.
+	 * A position is protected if it is inside a claim that is not the origin's claim
+	 * and not owned by the owner of the origin's claim.
+	 */
+	@Override
+	public boolean isProtectedFrom(BlockPos origin, List<BlockPos> positions) {
+		if (positions.isEmpty()) {
+			return false;
+		}
+		List<Interval> candidates = index.getOverlapping(getBounds(origin, positions), false, true);
+		if (candidates.isEmpty()) {
+			return false;
+		}
+
+		Interval originClaim = null;
+		for (Interval candidate : candidates) {
+			if (candidate.contains(origin.getX(), origin.getY(), origin.getZ())) {
+				originClaim = candidate;
+				break;
+			}
+		}
+		for (int i = 0; i < positions.size(); i++) {
+			BlockPos pos = positions.get(i);
+			for (Interval candidate : candidates) {
+				if (candidate.contains(pos.getX(), pos.getY(), pos.getZ()) && !isSameOwner(originClaim, candidate)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Queries the index once with the bounding box of all the boxes, then tests each box
+	 * against the candidate claims that the player does not have access to.
+	 */
+	@Override
+	public BitSet getProtectedAgainst(List<Box> boxes, UUID player) {
+		BitSet denied = new BitSet(boxes.size());
+		if (boxes.isEmpty()) {
+			return denied;
+		}
+		int[] boxBounds = new int[boxes.size() * 6];
+		for (int i = 0; i < boxes.size(); i++) {
+			ICoords min = boxes.get(i).getMinCoords();
+			ICoords max = boxes.get(i).getMaxCoords();
+			boxBounds[i * 6] = Math.min(min.getX(), max.getX());
+			boxBounds[i * 6 + 1] = Math.min(min.getY(), max.getY());
+			boxBounds[i * 6 + 2] = Math.min(min.getZ(), max.getZ());
+			boxBounds[i * 6 + 3] = Math.max(min.getX(), max.getX());
+			boxBounds[i * 6 + 4] = Math.max(min.getY(), max.getY());
+			boxBounds[i * 6 + 5] = Math.max(min.getZ(), max.getZ());
+		}
+		int[] bounds = getDeniedBounds(boxBounds, player);
+		if (bounds == null) {
+			return denied;
+		}
+		for (int i = 0; i < boxes.size(); i++) {
+			int o = i * 6;
+			for (int offset = 0; offset < bounds.length; offset += 6) {
+				if (boxBounds[o] <= bounds[offset + 3] && boxBounds[o + 3] >= bounds[offset]
+						&& boxBounds[o + 1] <= bounds[offset + 4] && boxBounds[o + 4] >= bounds[offset + 1]
+						&& boxBounds[o + 2] <= bounds[offset + 5] && boxBounds[o + 5] >= bounds[offset + 2]) {
+					denied.set(i);
+					break;
+				}
+			}
+		}
+		return denied;
+	}
+
+	@Override
+	public BitSet getProtectedAgainst(long[] positions, UUID player) {
+		BitSet denied = new BitSet(positions.length);
+		if (positions.length == 0) {
+			return denied;
+		}
+		int[] positionBounds = new int[positions.length * 6];
+		for (int i = 0; i < positions.length; i++) {
+			int x = BlockPos.getX(positions[i]);
+			int y = BlockPos.getY(positions[i]);
+			int z = BlockPos.getZ(positions[i]);
+			positionBounds[i * 6] = positionBounds[i * 6 + 3] = x;
+			positionBounds[i * 6 + 1] = positionBounds[i * 6 + 4] = y;
+			positionBounds[i * 6 + 2] = positionBounds[i * 6 + 5] = z;
+		}
+		int[] bounds = getDeniedBounds(positionBounds, player);
+		if (bounds == null) {
+			return denied;
+		}
+		for (int i = 0; i < positions.length; i++) {
+			if (isInside(bounds, positionBounds[i * 6], positionBounds[i * 6 + 1], positionBounds[i * 6 + 2])) {
+				denied.set(i);
+			}
+		}
+		return denied;
+	}
+
+	/**
+	 * Query the index once with the bounding box of all the bounds.
+	 * @param bounds packed min x,y,z max x,y,z of each entry
+	 * @param player
+	 * @return the packed bounds of the overlapping claims that the player does not have access to, or null if there are none
+	 */
+	private int[] getDeniedBounds(int[] bounds, UUID player) {
+		int minX = bounds[0], minY = bounds[1], minZ = bounds[2];
+		int maxX = bounds[3], maxY = bounds[4], maxZ = bounds[5];
+		for (int offset = 6; offset < bounds.length; offset += 6) {
+			minX = Math.min(minX, bounds[offset]);
+			minY = Math.min(minY, bounds[offset + 1]);
+			minZ = Math.min(minZ, bounds[offset + 2]);
+			maxX = Math.max(maxX, bounds[offset + 3]);
+			maxY = Math.max(maxY, bounds[offset + 4]);
+			maxZ = Math.max(maxZ, bounds[offset + 5]);
+		}
+		List<Interval> candidates = index.getOverlapping(new Interval(new Coords(minX, minY, minZ), new Coords(maxX, maxY, maxZ)), false, true);
+		if (candidates.isEmpty()) {
+			return null;
+		}
+
+		int playerId = ProtectionRegistries.players().getId(player);
+		int[] denied = new int[candidates.size() * 6];
+		int count = 0;
+		for (Interval interval : candidates) {
+			Property claim = CLAIMS_BY_COORDS.get(interval.getCoords1());
+			if (claim != null ? claim.hasAccess(playerId) : isOwner(interval, playerId)) {
+				continue;
+			}
+			denied[count++] = interval.getStart();
+			denied[count++] = interval.getStartY();
+			denied[count++] = interval.getStartZ();
+			denied[count++] = interval.getEnd();
+			denied[count++] = interval.getEndY();
+			denied[count++] = interval.getEndZ();
+		}
+		return count == 0 ? null : Arrays.copyOf(denied, count);
+	}
+
+	private static boolean isOwner(Interval interval, int playerId) {
+		int ownerId = interval.getData().getOwner().getId();
+		return ownerId != PlayerDictionary.NO_ID && ownerId == playerId;
+	}
+
+	@Override
+	public boolean isMobSpawningDenied(int x, int y, int z) {
+		// nearly every spawn attempt is in a chunk without a no-spawn claim
+		if (!NO_SPAWN_CHUNKS.containsKey(ChunkPos.asLong(x >> 4, z >> 4))
+				&& (NO_SPAWN_REGIONS.isEmpty() || !NO_SPAWN_REGIONS.containsKey(ChunkPos.asLong(x >> REGION_SHIFT, z >> REGION_SHIFT)))) {
+			return false;
+		}
+		Property claim = getClaim(x, y, z);
+		return claim != null && !claim.isMobSpawning();
+	}
+
+	@Override
+	public void setMobSpawning(Property claim, boolean mobSpawning) {
+		if (claim.isMobSpawning() == mobSpawning) {
+			return;
+		}
+		boolean isRegistered = CLAIMS_BY_UUID.get(claim.getUuid()) == claim;
+		claim.setMobSpawning(mobSpawning);
+		if (isRegistered) {
+			updateNoSpawnChunks(claim, mobSpawning ? -1 : 1);
+		}
+	}
+
+	@Override
+	public boolean addWhitelist(Property claim, PlayerData player) {
+		if (claim.addWhitelist(ProtectionRegistries.players().register(player))) {
+			markChanged();
+			return true;
+		}
+		return false;
+	}
+
+	@Override
+	public boolean removeWhitelist(Property claim, Predicate<PlayerData> predicate) {
+		if (claim.removeWhitelist(predicate)) {
+			markChanged();
+			return true;
+		}
+		return false;
+	}
+
+	@Override
+	public void clearWhitelist(Property claim) {
+		claim.clearWhitelist();
+		markChanged();
+	}
+
+	@Override
+	public boolean sameProtectionDomain(BlockPos from, BlockPos to) {
+		// most fluid and fire ticks are in unclaimed land, which the section cache answers without an index lookup
+		Property toClaim = getClaim(to.getX(), to.getY(), to.getZ());
+		Property fromClaim = getClaim(from.getX(), from.getY(), from.getZ());
+		if (toClaim == fromClaim) {
+			return true;
+		}
+		if (toClaim == null || fromClaim == null) {
+			return false;
+		}
+		int ownerId = fromClaim.getOwner().getId();
+		return ownerId != PlayerDictionary.NO_ID && ownerId == toClaim.getOwner().getId();
+	}
+
+	/**
+	 * Whether both claims are the same claim or are owned by the same player.
+	 * @param claim1 a claim, or null for unclaimed
+	 * @param claim2 a claim, or null for unclaimed
+	 */
+	private static boolean isSameOwner(Interval claim1, Interval claim2) {
+		if (claim1 == claim2) {
+			return true;
+		}
+		if (claim1 == null || claim2 == null) {
+			return false;
+		}
+		int ownerId = claim1.getData().getOwner().getId();
+		return ownerId != PlayerDictionary.NO_ID && ownerId == claim2.getData().getOwner().getId();
+	}
+
+	/**
+	 * The bounding box of the origin and the positions.
+	 */
+	private static Interval getBounds(BlockPos origin, List<BlockPos> positions) {
+		int minX = origin.getX(), minY = origin.getY(), minZ = origin.getZ();
+		int maxX = minX, maxY = minY, maxZ = minZ;
+		for (int i = 0; i < positions.size(); i++) {
+			BlockPos pos = positions.get(i);
+			minX = Math.min(minX, pos.getX());
+			minY = Math.min(minY, pos.getY());
+			minZ = Math.min(minZ, pos.getZ());
+			maxX = Math.max(maxX, pos.getX());
+			maxY = Math.max(maxY, pos.getY());
+			maxZ = Math.max(maxZ, pos.getZ());
+		}
+		return new Interval(new Coords(minX, minY, minZ), new Coords(maxX, maxY, maxZ));
+	}
+
+	private static boolean isInside(int[] bounds, int x, int y, int z) {
+		for (int offset = 0; offset < bounds.length; offset += 6) {
+			if (x >= bounds[offset] && y >= bounds[offset + 1] && z >= bounds[offset + 2]
+					&& x <= bounds[offset + 3] && y <= bounds[offset + 4] && z <= bounds[offset + 5]) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@FunctionalInterface
+	private interface BlockTest {
+		boolean isProtected(int x, int y, int z);
+	}
+
 	@Override
 	public List<Box> list() {
 		// TODO walk CLAIMS_BY_COORDS instead
 		List<Interval> protections = new ArrayList<>();
-		tree.list(tree.getRoot(), protections);
+		index.list(protections);
 		List<Box> boxes = new ArrayList<>();
 		protections.forEach(p -> {
 			boxes.add(p.toBox());
@@ -366,9 +1018,14 @@ public class BlockProtectionRegistry implements IBlockProtectionRegistry {
 	// TODO change to return Claim.EMPTY is not found or Optional<Claim> (Optional is better)
 	 @Override
 	public Property getClaimByCoords(ICoords coords) {
-		return CLAIMS_BY_COORDS.get(coords);
+		return coords == null ? null : CLAIMS_BY_COORDS.get(coords);
 	}
 	
+	@Override
+	public Property getClaimByUuid(UUID uuid) {
+		return uuid == null ? null : CLAIMS_BY_UUID.get(uuid);
+	}
+
 	@Override
 	public List<Property> findByClaim(Predicate<Property> predicate) {
 		List<Property> claims = new ArrayList<>();
@@ -398,7 +1055,7 @@ public class BlockProtectionRegistry implements IBlockProtectionRegistry {
 	 */
 	@Override
 	public List<String> toStringList() {
-		List<String> protections = tree.toStringList(tree.getRoot());
+		List<String> protections = index.toStringList();
 		return protections;
 	}
 	
@@ -409,19 +1066,81 @@ public class BlockProtectionRegistry implements IBlockProtectionRegistry {
 	 */
 	public synchronized CompoundTag save(CompoundTag nbt) {
 		ProtectIt.LOGGER.debug("saving registry...");
+		return saveClaims(CLAIMS_BY_COORDS.values(), nbt);
+	}
 
+	/**
+	 * Save the claims in the registry format. Safe to call off the server thread with a snapshot of the claims.
+	 * The claims are written in the binary claim format, falling back to the nbt list if they can't be encoded.
+	 * @param claims
+	 * @param nbt
+	 * @return
+	 */
+	public static CompoundTag saveClaims(Collection<Property> claims, CompoundTag nbt) {
+		try {
+			nbt.putByteArray(CLAIM_DATA_KEY, ClaimCodec.encode(claims));
+			return nbt;
+		} catch (Exception e) {
+			ProtectIt.LOGGER.error("unable to encode claims, saving as nbt:", e);
+		}
 		ListTag list = new ListTag();
-		CLAIMS_BY_COORDS.forEach((coords, claim) -> {
-			ProtectIt.LOGGER.debug("registry saving claim -> {}", claim);
+		claims.forEach(claim -> {
 			CompoundTag claimNbt = new CompoundTag();
 			claim.save(claimNbt);
 			list.add(claimNbt);
 		});
 		nbt.put(CLAIMS_KEY, list);
-
 		return nbt;
 	}
 
+	/**
+	 * 
+	 * @param nbt
+	 * @return whether the claims were saved in the registry tag, and should be saved again as regions
+	 */
+	public static boolean isLegacyFormat(CompoundTag nbt) {
+		return nbt.contains(CLAIMS_KEY) || nbt.contains(CLAIM_DATA_KEY);
+	}
+
+	@Override
+	public synchronized Map<Long, List<Property>> snapshotDirtyRegions() {
+		Map<Long, List<Property>> regions = new HashMap<>(DIRTY_REGIONS.size());
+		LongIterator iterator = DIRTY_REGIONS.iterator();
+		while (iterator.hasNext()) {
+			long region = iterator.nextLong();
+			Map<UUID, Property> claims = CLAIMS_BY_REGION.get(region);
+			List<Property> copies = new ArrayList<>(claims == null ? 0 : claims.size());
+			if (claims != null) {
+				claims.values().forEach(claim -> copies.add(claim.copy()));
+			}
+			regions.put(region, copies);
+		}
+		DIRTY_REGIONS.clear();
+		return regions;
+	}
+
+	@Override
+	public synchronized void markRegionDirty(Property claim) {
+		if (CLAIMS_BY_UUID.get(claim.getUuid()) == claim) {
+			DIRTY_REGIONS.add(regionOf(claim));
+		}
+	}
+
+	@Override
+	public synchronized void markRegionsDirty(Collection<Long> regions) {
+		regions.forEach(region -> DIRTY_REGIONS.add(region.longValue()));
+	}
+
+	@Override
+	public synchronized void markAllRegionsDirty() {
+		DIRTY_REGIONS.addAll(CLAIMS_BY_REGION.keySet());
+	}
+
+	@Override
+	public synchronized void clearDirtyRegions() {
+		DIRTY_REGIONS.clear();
+	}
+
 	/**
 	 * 
 	 */
@@ -431,38 +1150,72 @@ public class BlockProtectionRegistry implements IBlockProtectionRegistry {
 
 //		tree.load(nbt);
 
-		if (nbt.contains(CLAIMS_KEY)) {
+		List<Property> claims = new ArrayList<>();
+		if (nbt.contains(CLAIM_DATA_KEY)) {
+			try {
+				claims = ClaimCodec.decode(nbt.getByteArray(CLAIM_DATA_KEY));
+			} catch (IOException e) {
+				ProtectIt.LOGGER.error("unable to decode claims:", e);
+			}
+		}
+		else if (nbt.contains(CLAIMS_KEY)) {
 			ListTag list = nbt.getList(CLAIMS_KEY, 10);
-			list.forEach(element -> {
-//			for (CompoundTag compound : list.listIterator().
-				Property claim = new Property().load((CompoundTag)element);
-				ProtectIt.LOGGER.debug("loaded claim -> {}", claim);
-				CLAIMS_BY_COORDS.put(claim.getCoords(), claim);
-//				ProtectIt.LOGGER.debug("coords mapped claim -> {}", CLAIMS_BY_COORDS.get(claim.getCoords()));
-				
-				if (!CLAIMS_BY_OWNER.containsKey(claim.getOwner().getUuid())) {
-					// create new list entry
-					CLAIMS_BY_OWNER.put(claim.getOwner().getUuid(), new ArrayList<>());
-				}
-				CLAIMS_BY_OWNER.get(claim.getOwner().getUuid()).add(claim);
-				ProtectIt.LOGGER.debug("claim BEFORE inserting into tree -> {}", CLAIMS_BY_COORDS.get(claim.getCoords()));
-				tree.insert(new Interval(claim.getBox().getMinCoords(), claim.getBox().getMaxCoords(), new OwnershipData(claim.getOwner().getUuid(), claim.getOwner().getName())));
-				ProtectIt.LOGGER.debug("claim AFTER inserting into tree -> {}", CLAIMS_BY_COORDS.get(claim.getCoords()));
-				ProtectIt.LOGGER.debug("running loaded claims_by_coords -> {}", CLAIMS_BY_COORDS);
+			ProtectIt.LOGGER.info("migrating {} claims from the nbt format", list.size());
+			for (Tag element : list) {
+				claims.add(Property.of((CompoundTag)element));
+			}
+		}
+
+		if (!claims.isEmpty()) {
+			List<Interval> intervals = new ArrayList<>(claims.size());
+			claims.forEach(claim -> {
+				// key by box min coords, same as addProtection() and the index lookups
+				indexClaim(claim);
+				intervals.add(toInterval(claim));
 			});
-//			ProtectIt.LOGGER.debug("0.all loaded claims_by_coords -> {}", CLAIMS_BY_COORDS);
+			// build the index in one pass
+			index.build(intervals);
+			clearSections();
 		}
-		// print the loaded claim again
-		ProtectIt.LOGGER.debug("1. all loaded claims_by_coords -> {}", CLAIMS_BY_COORDS);
-		ProtectIt.LOGGER.debug("all loaded in tree -> {}", tree.toStringList(tree.getRoot()));
+		ProtectIt.LOGGER.debug("loaded claims -> {}, size of index -> {}", CLAIMS_BY_UUID.size(), index.size());
+	}
+
+	/**
+	 * Replace the claims with the loaded claims. If the index image holds exactly the claims, it is used
+	 * as the index instead of building one, and is copied into this registry's index on the first change.
+	 * @param claims
+	 * @param image
+	 * @return whether the image was used
+	 */
+	@Override
+	public synchronized boolean load(List<Property> claims, MappedIntervalIndex image) {
+		clear();
+		claims.forEach(this::indexClaim);
+		if (image.matches(CLAIMS_BY_UUID::get, CLAIMS_BY_UUID.size())) {
+			index = image.bind(BlockProtectionRegistry::toInterval, index, copy -> index = copy);
+			clearSections();
+			ProtectIt.LOGGER.debug("loaded claims -> {} with index image", CLAIMS_BY_UUID.size());
+			return true;
+		}
+		List<Interval> intervals = new ArrayList<>(claims.size());
+		claims.forEach(claim -> intervals.add(toInterval(claim)));
+		index.build(intervals);
+		clearSections();
+		return false;
 	}
 
 	/**
 	 * 
 	 */
 	public void clear() {
+		CLAIMS_BY_UUID.clear();
 		CLAIMS_BY_OWNER.clear();
 		CLAIMS_BY_COORDS.clear();
-		tree.clear();
+		NO_SPAWN_CHUNKS.clear();
+		NO_SPAWN_REGIONS.clear();
+		CLAIMS_BY_REGION.clear();
+		DIRTY_REGIONS.clear();
+		index.clear();
+		clearSections();
 	}
 }
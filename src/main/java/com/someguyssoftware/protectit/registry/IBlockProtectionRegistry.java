@@ -19,12 +19,20 @@
  */
 package com.someguyssoftware.protectit.registry;
 
+import java.util.BitSet;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 import java.util.function.Predicate;
 
 import com.someguyssoftware.protectit.claim.Property;
+import com.someguyssoftware.protectit.registry.cache.IDomainListener;
+import com.someguyssoftware.protectit.registry.packed.MappedIntervalIndex;
 
+import mod.gottsch.forge.gottschcore.spatial.Box;
 import mod.gottsch.forge.gottschcore.spatial.ICoords;
+import net.minecraft.core.BlockPos;
 
 /**
  * Protection Registry more specific to land claim ownership / block protections ie can't alter blocks in area unless you are the owner.
@@ -49,12 +57,165 @@ public interface IBlockProtectionRegistry extends IProtectionRegistry {
 	  */
 	boolean isProtectedAgainst(ICoords coords, String uuid);
 	boolean isProtectedAgainst(ICoords coords1, ICoords coords2, String uuid);
+
+	/**
+	 * Allocation-free check for a single block. Use on hot paths ie. event handlers.
+	 * @param x
+	 * @param y
+	 * @param z
+	 * @return
+	 */
+	boolean isProtected(int x, int y, int z);
+
+	/**
+	 * Allocation-free check for a single block. Use on hot paths ie. event handlers.
+	 * @param x
+	 * @param y
+	 * @param z
+	 * @param player
+	 * @return
+	 */
+	boolean isProtectedAgainst(int x, int y, int z, UUID player);
+
+	/**
+	 * Remove all the protected blocks from the list, ie. the affected blocks of an explosion.
+	 * @param blocks
+	 */
+	void removeProtected(List<BlockPos> blocks);
+
+	/**
+	 * Allocation-free lookup of the claim that contains the block.
+	 * @param x
+	 * @param y
+	 * @param z
+	 * @return the claim or null if the block is not claimed
+	 */
+	Property getClaim(int x, int y, int z);
+
+	/**
+	 * A counter that is incremented on every change to the claims.
+	 * Anything cached from the registry is only valid while the epoch is unchanged.
+	 * @return
+	 */
+	long getEpoch();
+
+	/**
+	 * Increment the epoch for a change that does not touch the index, ie. a whitelist change.
+	 */
+	void markChanged();
+
+	/**
+	 * Whether any of the positions are protected from a change that originates at the origin,
+	 * ie. blocks moved by a piston. Positions inside the origin's claim or another claim of the same owner are not protected.
+	 * @param origin
+	 * @param positions
+	 * @return
+	 */
+	boolean isProtectedFrom(BlockPos origin, List<BlockPos> positions);
+
+	/**
+	 * Batch test of many boxes against the player, ie. before pasting a structure. Queries the index once.
+	 * @param boxes
+	 * @param player
+	 * @return the indexes of the boxes that contain a block that is protected against the player
+	 */
+	BitSet getProtectedAgainst(List<Box> boxes, UUID player);
+
+	/**
+	 * Batch test of many positions against the player. Queries the index once.
+	 * @param positions packed block positions, see {@link BlockPos#asLong()}
+	 * @param player
+	 * @return the indexes of the positions that are protected against the player
+	 */
+	BitSet getProtectedAgainst(long[] positions, UUID player);
+
+	/**
+	 * Whether both blocks are unclaimed, in the same claim, or in claims of the same owner.
+	 * Cheap enough to call on every fluid or fire tick.
+	 * @param from
+	 * @param to
+	 * @return
+	 */
+	boolean sameProtectionDomain(BlockPos from, BlockPos to);
+
+	/**
+	 * Whether hostile mob spawning is disabled at the block.
+	 * Blocks in chunks without a property that disables spawning are rejected without an index lookup.
+	 * @param x
+	 * @param y
+	 * @param z
+	 * @return
+	 */
+	boolean isMobSpawningDenied(int x, int y, int z);
+
+	/**
+	 * Enable or disable hostile mob spawning in the claim.
+	 * @param claim
+	 * @param mobSpawning
+	 */
+	void setMobSpawning(Property claim, boolean mobSpawning);
+
+	/**
+	 * Whitelist the player on the claim, and increment the epoch.
+	 * @param claim
+	 * @param player
+	 * @return false if the player is already whitelisted
+	 */
+	boolean addWhitelist(Property claim, PlayerData player);
+
+	/**
+	 * Remove the matching players from the claim's whitelist, and increment the epoch.
+	 * @param claim
+	 * @param predicate
+	 * @return whether any players were removed
+	 */
+	boolean removeWhitelist(Property claim, Predicate<PlayerData> predicate);
+
+	/**
+	 * Clear the claim's whitelist, and increment the epoch.
+	 * @param claim
+	 */
+	void clearWhitelist(Property claim);
+
+	/**
+	 * Tell the listener of the areas whose protection domain may change, ie. claims added or removed.
+	 * @param listener
+	 */
+	void addDomainListener(IDomainListener listener);
+	void removeDomainListener(IDomainListener listener);
 	
 	// TODO this replaces old PlayerData methods
 	public void addProtection(Property claim);
+	public void addProtections(List<Property> claims);
+	public void rebuildIndex();
 	public List<Property> getAll();
+
+	/**
+	 * A copy of the claims of each region changed since the last snapshot, by packed region pos.
+	 * A region that no longer has claims maps to an empty list. Clears the changed regions.
+	 * @return
+	 */
+	public Map<Long, List<Property>> snapshotDirtyRegions();
+
+	/**
+	 * Mark the claim's region as changed, ie. after the claim is renamed or its whitelist changed.
+	 * @param claim
+	 */
+	public void markRegionDirty(Property claim);
+	public void markRegionsDirty(Collection<Long> regions);
+	public void markAllRegionsDirty();
+	public void clearDirtyRegions();
+
+	/**
+	 * Replace the claims, using the index image instead of building the index if the image matches the claims.
+	 * @param claims
+	 * @param image
+	 * @return whether the image was used
+	 */
+	public boolean load(List<Property> claims, MappedIntervalIndex image);
 	public List<Property> getProtections(String uuid);
 	public List<Property> findByClaim(Predicate<Property> predicate);
 	public Property getClaimByCoords(ICoords coords);
+	public Property getClaimByUuid(UUID uuid);
 
 }
@@ -0,0 +1,126 @@
+/*
+ * This file is part of  Protect It.
+ * Copyright (c) 2023 Mark Gottschling (gottsch)
+ *
+ * All rights reserved.
+ *
+ * Protect It is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Protect It is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Protect It.  If not, see <http://www.gnu.org/licenses/lgpl>.
+ */
+package com.someguyssoftware.protectit.registry;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Predicate;
+
+import com.someguyssoftware.protectit.registry.bst.Interval;
+
+/**
+ * The spatial index that backs a block protection registry.
+ * Implementations must be safe to query from both the server and client threads.
+ *
+ * @author Mark Gottschling on Mar 4, 2023
+ *
+ */
+public interface IProtectionIndex {
+	// returned by getOwnerContaining when no interval contains the block
+	public static final int NOT_CONTAINED = Integer.MIN_VALUE;
+
+	/**
+	 * add an interval to the index
+	 * @param interval
+	 */
+	public void insert(Interval interval);
+
+	/**
+	 * remove the interval that exactly matches the target's coords
+	 * @param target
+	 */
+	public void delete(Interval target);
+
+	/**
+	 * remove all the intervals that exactly match the targets' coords as a single mutation.
+	 * readers see either none or all of the removals.
+	 * @param targets
+	 */
+	public void deleteAll(Collection<Interval> targets);
+
+	/**
+	 * replace the contents of the index with the intervals, building it bottom-up in a single pass
+	 * instead of inserting one at a time. used for loading and rebuilding.
+	 * @param intervals
+	 */
+	public void build(Collection<Interval> intervals);
+
+	public boolean contains(Interval target);
+
+	/**
+	 * get all the intervals that intersect with the test interval
+	 * @param testInterval
+	 * @param findFast return after the first intersection is found
+	 * @param includeBorder whether touching borders count as an intersection
+	 * @return a non-null list
+	 */
+	public List<Interval> getOverlapping(Interval testInterval, boolean findFast, boolean includeBorder);
+
+	/**
+	 * get the first interval that contains the block, including borders.
+	 * must not allocate.
+	 * @param x
+	 * @param y
+	 * @param z
+	 * @return the interval or null if the block is not protected
+	 */
+	public Interval getContaining(int x, int y, int z);
+
+	/**
+	 * get the owner's player dictionary id of the first interval that contains the block.
+	 * must not allocate.
+	 * @param x
+	 * @param y
+	 * @param z
+	 * @return the owner id, which may be PlayerDictionary.NO_ID, or NOT_CONTAINED if the block is not protected
+	 */
+	public default int getOwnerContaining(int x, int y, int z) {
+		Interval interval = getContaining(x, y, z);
+		return interval == null ? NOT_CONTAINED : interval.getData().getOwner().getId();
+	}
+
+	/**
+	 *
+	 * @param predicate
+	 * @param intervals
+	 * @param findFirst find first occurrence only
+	 * @return whether a match was found
+	 */
+	public boolean find(Predicate<Interval> predicate, List<Interval> intervals, boolean findFirst);
+
+	/**
+	 * add all intervals to the list
+	 * @param intervals
+	 */
+	public void list(List<Interval> intervals);
+
+	public List<String> toStringList();
+
+	public void clear();
+
+	/**
+	 * a frozen copy of the index that is not affected by later mutations,
+	 * for off-thread work like saving or auditing.
+	 * @return
+	 */
+	public IProtectionIndex snapshot();
+
+	public int size();
+}
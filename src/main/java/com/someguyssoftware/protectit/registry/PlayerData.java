@@ -31,6 +31,8 @@ public class PlayerData {
 	
 	private String uuid;
 	private String name;
+	// dense id from the player dictionary
+	private int id = PlayerDictionary.NO_ID;
 	
 	/**
 	 * 
@@ -48,6 +50,15 @@ public class PlayerData {
 		this(uuid);
 		setName(name);
 	}
+
+	/**
+	 * Interned instance, created by the player dictionary.
+	 */
+	PlayerData(String uuid, String name, int id) {
+		this.uuid = uuid;
+		this.name = name;
+		this.id = id;
+	}
 	
 	public CompoundTag save() {
 		CompoundTag nbt = new CompoundTag();
@@ -75,6 +86,11 @@ public class PlayerData {
 	}
 	public void setUuid(String uuid) {
 		this.uuid = uuid;
+		this.id = ProtectionRegistries.players().getId(uuid);
+	}
+
+	public int getId() {
+		return id;
 	}
 	
 	public String getName() {
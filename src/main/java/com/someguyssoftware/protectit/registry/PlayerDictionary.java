@@ -0,0 +1,146 @@
+/*
+ * This file is part of  Protect It.
+ * Copyright (c) 2023 Mark Gottschling (gottsch)
+ *
+ * All rights reserved.
+ *
+ * Protect It is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Protect It is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Protect It.  If not, see <http://www.gnu.org/licenses/lgpl>.
+ */
+package com.someguyssoftware.protectit.registry;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Server-wide dictionary of players. Each player uuid is assigned a dense int id
+ * and a single interned PlayerData, so ownership and whitelist checks are int comparisons
+ * and claims share one PlayerData per player.
+ * <p>
+ * Players are only registered when a claim that they own or are whitelisted on is added to the registry,
+ * so looking up an id never grows the dictionary.
+ * Ids are only stable for the life of the process and are never saved.
+ *
+ * @author Mark Gottschling on Mar 5, 2023
+ *
+ */
+public class PlayerDictionary {
+	public static final int NO_ID = -1;
+
+	private final Map<UUID, PlayerData> players = new ConcurrentHashMap<>();
+	private volatile PlayerData[] playersById = new PlayerData[16];
+	private int size;
+
+	/**
+	 * Allocation-free lookup.
+	 * @param uuid
+	 * @return the player's id or NO_ID if the player is unknown
+	 */
+	public int getId(UUID uuid) {
+		PlayerData data = players.get(uuid);
+		return data == null ? NO_ID : data.getId();
+	}
+
+	/**
+	 * 
+	 * @param uuid
+	 * @return the player's id or NO_ID if the player is unknown, or the uuid is blank or malformed
+	 */
+	public int getId(String uuid) {
+		UUID id = toUuid(uuid);
+		return id == null ? NO_ID : getId(id);
+	}
+
+	/**
+	 * 
+	 * @param id
+	 * @return the interned player or null
+	 */
+	public PlayerData get(int id) {
+		PlayerData[] byId = playersById;
+		return id >= 0 && id < byId.length ? byId[id] : null;
+	}
+
+	/**
+	 * Get the shared instance for the player, updating its name if the given one is newer.
+	 * Unknown players and players without a valid uuid are returned as is.
+	 * @param data
+	 * @return
+	 */
+	public PlayerData intern(PlayerData data) {
+		PlayerData interned = get(data.getId() != NO_ID ? data.getId() : getId(data.getUuid()));
+		return interned == null ? data : rename(interned, data);
+	}
+
+	/**
+	 * Get the shared instance for the player, registering the player if unknown.
+	 * Only called when a claim is added to the registry.
+	 * Players without a valid uuid are returned as is.
+	 * @param data
+	 * @return
+	 */
+	public PlayerData register(PlayerData data) {
+		UUID id = toUuid(data.getUuid());
+		if (id == null) {
+			return data;
+		}
+		PlayerData interned = players.get(id);
+		if (interned == null) {
+			interned = register(id, data.getUuid());
+		}
+		return rename(interned, data);
+	}
+
+	private static PlayerData rename(PlayerData interned, PlayerData data) {
+		if (interned != data && StringUtils.isNotBlank(data.getName()) && !data.getName().equals(interned.getName())) {
+			interned.setName(data.getName());
+		}
+		return interned;
+	}
+
+	public int size() {
+		return players.size();
+	}
+
+	private synchronized PlayerData register(UUID id, String uuid) {
+		PlayerData data = players.get(id);
+		if (data != null) {
+			return data;
+		}
+		data = new PlayerData(uuid, "", size);
+		PlayerData[] byId = playersById;
+		if (size == byId.length) {
+			byId = Arrays.copyOf(byId, size * 2);
+		}
+		byId[size++] = data;
+		playersById = byId;
+		players.put(id, data);
+		return data;
+	}
+
+	private static UUID toUuid(String uuid) {
+		if (StringUtils.isBlank(uuid)) {
+			return null;
+		}
+		try {
+			return UUID.fromString(uuid);
+		}
+		catch(IllegalArgumentException e) {
+			return null;
+		}
+	}
+}
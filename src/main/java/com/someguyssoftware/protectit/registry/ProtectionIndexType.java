@@ -0,0 +1,53 @@
+/*
+ * This file is part of  Protect It.
+ * Copyright (c) 2023 Mark Gottschling (gottsch)
+ *
+ * All rights reserved.
+ *
+ * Protect It is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Protect It is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Protect It.  If not, see <http://www.gnu.org/licenses/lgpl>.
+ */
+package com.someguyssoftware.protectit.registry;
+
+import com.someguyssoftware.protectit.config.Config;
+import com.someguyssoftware.protectit.registry.bst.ProtectedIntervalTree;
+import com.someguyssoftware.protectit.registry.chunk.ChunkBucketIndex;
+import com.someguyssoftware.protectit.registry.packed.PackedIntervalIndex;
+
+/**
+ * The available spatial index backends for the block protection registry.
+ *
+ * @author Mark Gottschling on Mar 4, 2023
+ *
+ */
+public enum ProtectionIndexType {
+	TREE,
+	CHUNK,
+	PACKED;
+
+	/**
+	 * 
+	 * @return a new, empty index of this type
+	 */
+	public IProtectionIndex create() {
+		switch (this) {
+		case CHUNK:
+			return new ChunkBucketIndex(Config.REGISTRY.chunkBucketThreshold.get());
+		case PACKED:
+			return new PackedIntervalIndex();
+		case TREE:
+		default:
+			return new ProtectedIntervalTree();
+		}
+	}
+}
@@ -19,16 +19,25 @@
  */
 package com.someguyssoftware.protectit.registry;
 
+import com.someguyssoftware.protectit.ProtectIt;
+import com.someguyssoftware.protectit.config.Config;
+
 /**
  * 
  * @author Mark Gottschling on Oct 5, 2021
  *
  */
 public class ProtectionRegistries {
+	/*
+	 * player uuid to int id dictionary, shared by all registries.
+	 * declared first, as the registries may create player data.
+	 */
+	private static final PlayerDictionary PLAYERS = new PlayerDictionary();
+
 	/*
 	 * block protection registry - ie. land claims
 	 */
-	private static final IBlockProtectionRegistry REGISTRY = new BlockProtectionRegistry();
+	private static volatile IBlockProtectionRegistry REGISTRY = new BlockProtectionRegistry();
 	
 	/*
 	 * PVP protection registry - player vs player protection areas ie. safe zones
@@ -45,4 +54,18 @@ public class ProtectionRegistries {
 	public static IPvpProtectionRegistry pvp() {
 		return PVP_REGISTRY;
 	}
+
+	public static PlayerDictionary players() {
+		return PLAYERS;
+	}
+
+	/**
+	 * Replace the block registry with a new, empty one backed by the configured index type.
+	 * Called on world load, before the saved data is read.
+	 */
+	public static void initBlockRegistry() {
+		ProtectionIndexType type = Config.REGISTRY.protectionIndex.get();
+		ProtectIt.LOGGER.debug("initializing block protection registry with index -> {}", type);
+		REGISTRY = new BlockProtectionRegistry(type.create(), Config.REGISTRY.sectionCacheSize.get());
+	}
 }
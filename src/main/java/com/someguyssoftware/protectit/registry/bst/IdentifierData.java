@@ -20,6 +20,8 @@
 package com.someguyssoftware.protectit.registry.bst;
 
 import com.someguyssoftware.protectit.ProtectIt;
+import com.someguyssoftware.protectit.registry.PlayerDictionary;
+import com.someguyssoftware.protectit.registry.ProtectionRegistries;
 
 import net.minecraft.nbt.CompoundTag;
 
@@ -32,9 +34,11 @@ import net.minecraft.nbt.CompoundTag;
 public class IdentifierData {
 	private String uuid;
 	private String name;
+	// dense id from the player dictionary
+	private int id = PlayerDictionary.NO_ID;
 	
 	public IdentifierData(String uuid) {
-		this.uuid = (uuid == null) ? "" : uuid;
+		setUuid((uuid == null) ? "" : uuid);
 	}
 	
 	public IdentifierData(String uuid, String name) {
@@ -67,6 +71,11 @@ public class IdentifierData {
 
 	public void setUuid(String uuid) {
 		this.uuid = uuid;
+		this.id = ProtectionRegistries.players().getId(uuid);
+	}
+
+	public int getId() {
+		return id;
 	}
 
 	public String getName() {
@@ -84,48 +84,40 @@ public class Interval implements Comparable<Interval> {
 		return new Box(getCoords1(), getCoords2());
 	}
 	
+	/**
+	 * 
+	 * @param x
+	 * @param y
+	 * @param z
+	 * @return whether the block is inside this interval, including borders
+	 */
+	public boolean contains(int x, int y, int z) {
+		return x >= getStart() && x <= getEnd()
+				&& z >= getStartZ() && z <= getEndZ()
+				&& y >= getStartY() && y <= getEndY();
+	}
+
 	@Override
 	public int compareTo(Interval interval) {
-		if (this.getStart() < interval.getStart()) {
-			ProtectIt.LOGGER.debug("this.c1.x < interval.c1.x");
-			return -1;
-		} else if (this.getStart() == interval.getStart()) {
-
-			if (getEnd() == interval.getEnd()) {
-				if (getStartZ() < interval.getStartZ()) {
-					return -1;
-				} else if (getStartZ() == interval.getStartZ()) {
-					if (getEndZ() == interval.getEndZ()) {
-//						return 0;
-						///////						
-						if (getStartY() < interval.getStartY()) {
-							return -1;
-						} else if (getStartY() == interval.getStartY()) {
-							if (getEndY() == interval.getEndY()) {
-								return 0;
-							}
-							ProtectIt.LOGGER.debug("this.c2.y -> {}, interval.c2.y -> {}", this.getEndY(), interval.getEndY());
-							return this.getEndY() < interval.getEndY() ? -1 : 1;
-						} else {
-							ProtectIt.LOGGER.debug("this.c1.y -> {}, interval.c1.y -> {}", this.getEndY(), interval.getEndY());
-							return 1;
-						}
-						//////////////
-					}
-					ProtectIt.LOGGER.debug("this.c2.z -> {}, interval.c2.z -> {}", this.getEndZ(), interval.getEndZ());
-					return this.getEndZ() < interval.getEndZ() ? -1 : 1;
-				} else {
-					ProtectIt.LOGGER.debug("this.c1.z -> {}, interval.c1.z -> {}", this.getEndZ(), interval.getEndZ());
-					return 1;
-				}
-			} else {
-				ProtectIt.LOGGER.debug("this.c2.x -> {}, interval.c2.x -> {}", this.getEnd(), interval.getEnd());
-				return this.getEnd() < interval.getEnd() ? -1 : 1;
-			}
-		} else {
-			ProtectIt.LOGGER.debug("this.c1.x > interval.c1.x -> {} > {}", this.getStart(), interval.getStart());
-			return 1;
+		if (this.getStart() != interval.getStart()) {
+			return this.getStart() < interval.getStart() ? -1 : 1;
+		}
+		if (this.getEnd() != interval.getEnd()) {
+			return this.getEnd() < interval.getEnd() ? -1 : 1;
+		}
+		if (this.getStartZ() != interval.getStartZ()) {
+			return this.getStartZ() < interval.getStartZ() ? -1 : 1;
+		}
+		if (this.getEndZ() != interval.getEndZ()) {
+			return this.getEndZ() < interval.getEndZ() ? -1 : 1;
+		}
+		if (this.getStartY() != interval.getStartY()) {
+			return this.getStartY() < interval.getStartY() ? -1 : 1;
+		}
+		if (this.getEndY() != interval.getEndY()) {
+			return this.getEndY() < interval.getEndY() ? -1 : 1;
 		}
+		return 0;
 	}
 
 	/**
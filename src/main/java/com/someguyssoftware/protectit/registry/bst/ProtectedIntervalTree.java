@@ -1,7 +1,7 @@
 /*
  * This file is part of  Protect It.
  * Copyright (c) 2021 Mark Gottschling (gottsch)
- * 
+ *
  * All rights reserved.
  *
  * Protect It is free software: you can redistribute it and/or modify
@@ -19,421 +19,591 @@
  */
 package com.someguyssoftware.protectit.registry.bst;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
 import java.util.List;
 import java.util.function.Predicate;
 
-import com.google.common.collect.Lists;
 import com.someguyssoftware.protectit.ProtectIt;
+import com.someguyssoftware.protectit.registry.IProtectionIndex;
 
 import net.minecraft.nbt.CompoundTag;
 
-// NOTE this is currently not a balanced Binary Search Tree
-public class ProtectedIntervalTree {
-	private Interval root;
+/**
+ * A persistent left-leaning red-black interval tree, keyed on the x-axis start of each interval
+ * and augmented with the min/max x-axis extents of every subtree.
+ * <p>
+ * Nodes are immutable. Writers build a new root by copying the path from the root to the
+ * changed node and publish it through a volatile reference, so readers never lock and always
+ * see a consistent version of the tree. {@link #snapshot()} is O(1) and returns a frozen copy
+ * that is not affected by later mutations.
+ * <p>
+ * The tree is rebalanced on every insert and delete, so the height is bounded by 2 log(n).
+ *
+ * @author Mark Gottschling on Oct 2, 2021
+ *
+ */
+public class ProtectedIntervalTree implements IProtectionIndex {
+	private static final boolean RED = true;
+	private static final boolean BLACK = false;
 
-	public synchronized Interval insert(Interval interval) {
-		root = insert(root, interval);
-		return root;
+	private volatile Node root;
+
+	public ProtectedIntervalTree() {
+	}
+
+	private ProtectedIntervalTree(Node root) {
+		this.root = root;
+	}
+
+	@Override
+	public synchronized void insert(Interval interval) {
+		root = blacken(insert(root, interval));
 	}
 
 	/**
-	 * 
+	 *
+	 * @param node
 	 * @param interval
-	 * @param newInterval
 	 * @return
 	 */
-	private Interval insert(Interval interval, Interval newInterval) {
-		if (interval == null) {
-			interval = newInterval;
-			return interval;
+	private static Node insert(Node node, Interval interval) {
+		if (node == null) {
+			return new Node(interval, null, null, RED);
 		}
 
-		if (interval.getMax() == null ||  newInterval.getEnd() > interval.getMax()) {
-			interval.setMax(newInterval.getEnd());
+		if (interval.compareTo(node.interval) < 0) {
+			node = node.withLeft(insert(node.left, interval));
+		}
+		else {
+			node = node.withRight(insert(node.right, interval));
 		}
-        if (interval.getMin() == null || newInterval.getStart() < interval.getMin()) {
-        	interval.setMin(newInterval.getStart());
-        }
-        
-		if (interval.compareTo(newInterval) <= 0) {
+		return balance(node);
+	}
 
-			if (interval.getRight() == null) {
-				interval.setRight(newInterval);
-			}
-			else {
-				insert(interval.getRight(), newInterval);
-			}
+	/**
+	 * Sorts the intervals once and builds a valid left-leaning red-black tree bottom-up in O(n log n),
+	 * with the minimum possible height.
+	 * @param intervals
+	 */
+	@Override
+	public synchronized void build(Collection<Interval> intervals) {
+		Interval[] sorted = intervals.toArray(new Interval[0]);
+		Arrays.sort(sorted);
+		// the largest black height that the number of intervals can fill
+		root = build(sorted, 0, sorted.length, 31 - Integer.numberOfLeadingZeros(sorted.length + 1));
+	}
+
+	/**
+	 * Build the subtree over the sorted range [lo, hi) with the given black height, as a 2-3 tree:
+	 * a subtree of black height h holds between 2^h - 1 and 3^h - 1 intervals. A range that
+	 * does not fit under a 2-node gets a 3-node, ie. a black node with a red left child.
+	 * @param sorted
+	 * @param lo
+	 * @param hi
+	 * @param height
+	 * @return
+	 */
+	private static Node build(Interval[] sorted, int lo, int hi, int height) {
+		int count = hi - lo;
+		if (count == 0) {
+			return null;
 		}
-		else {
-			if (interval.getLeft() == null) {
-				interval.setLeft(newInterval);
-			}
-			else {
-				insert(interval.getLeft(), newInterval);
-			}
+		long childMax = pow3(height - 1) - 1;
+		if (count - 1 <= 2 * childMax) {
+			// 2-node
+			int mid = lo + (count - 1) / 2;
+			return new Node(sorted[mid], build(sorted, lo, mid, height - 1), build(sorted, mid + 1, hi, height - 1), BLACK);
 		}
-		return interval;
+		// 3-node, split the remaining intervals into three subtrees
+		int remaining = count - 2;
+		int first = lo + remaining / 3;
+		int second = first + 1 + (remaining + 1) / 3;
+		Node left = new Node(sorted[first], build(sorted, lo, first, height - 1), build(sorted, first + 1, second, height - 1), RED);
+		return new Node(sorted[second], left, build(sorted, second + 1, hi, height - 1), BLACK);
+	}
+
+	private static long pow3(int exponent) {
+		long result = 1;
+		for (int i = 0; i < exponent; i++) {
+			result *= 3;
+		}
+		return result;
 	}
 
 	/**
-	 * Requires and extact match of intervals.
+	 * Requires an exact match of intervals.
 	 * @param target
-	 * @return
 	 */
-	public synchronized Interval delete(Interval target) {
-		root = delete(root, target);
-		ProtectIt.LOGGER.debug("root is now -> {}", root);
-		ProtectIt.LOGGER.debug("all intervals now -> {}", toStringList(root));
-		return root;
+	@Override
+	public synchronized void delete(Interval target) {
+		root = deleteFromRoot(root, target);
+	}
+
+	/**
+	 * Deletes against a local root and publishes once, so the cost is O(k log n).
+	 * @param targets
+	 */
+	@Override
+	public synchronized void deleteAll(Collection<Interval> targets) {
+		Node node = root;
+		for (Interval target : targets) {
+			node = deleteFromRoot(node, target);
+		}
+		root = node;
 	}
 
 	/**
 	 * 
-	 * @param interval
+	 * @param node
 	 * @param target
-	 * @return
+	 * @return the new root
 	 */
-	private Interval delete(Interval interval, Interval target) {
-		ProtectIt.LOGGER.debug("delete interval -> {}, target -> {}", interval, target);
-		if (interval == null) {
-			return interval;
+	private static Node deleteFromRoot(Node node, Interval target) {
+		if (!contains(node, target)) {
+			return node;
 		}
-
-		if (interval.compareTo(target) < 0) {
-			ProtectIt.LOGGER.debug("setting right...");
-			interval.setRight(delete(interval.getRight(), target));
+		// if both children of root are black, set root to red
+		if (!isRed(node.left) && !isRed(node.right)) {
+			node = node.withColor(RED);
 		}
-		else if (interval.compareTo(target) > 0) {
-			ProtectIt.LOGGER.debug("setting left...");
-			interval.setLeft(delete(interval.getLeft(), target));
+		return blacken(delete(node, target));
+	}
+
+	/**
+	 * Assumes the target is contained in the subtree.
+	 * @param node
+	 * @param target
+	 * @return
+	 */
+	private static Node delete(Node node, Interval target) {
+		if (target.compareTo(node.interval) < 0) {
+			if (!isRed(node.left) && !isRed(node.left.left)) {
+				node = moveRedLeft(node);
+			}
+			node = node.withLeft(delete(node.left, target));
 		}
 		else {
-			// node with no leaf nodes
-			if (interval.getLeft() == null && interval.getRight() == null) {
-				ProtectIt.LOGGER.debug("no child nodes...");
+			if (isRed(node.left)) {
+				node = rotateRight(node);
+			}
+			if (target.compareTo(node.interval) == 0 && node.right == null) {
 				return null;
 			}
-			else if (interval.getLeft() == null) {
-				ProtectIt.LOGGER.debug("returning right...");
-				return interval.getRight();
+			if (!isRed(node.right) && !isRed(node.right.left)) {
+				node = moveRedRight(node);
 			}
-			else if (interval.getRight() == null) {
-				ProtectIt.LOGGER.debug("returing left...");
-				return interval.getLeft();
+			if (target.compareTo(node.interval) == 0) {
+				// replace this node with its successor
+				Node successor = min(node.right);
+				node = new Node(successor.interval, node.left, deleteMin(node.right), node.red);
 			}
 			else {
-				ProtectIt.LOGGER.debug("inserting left into right...");
-				// insert right tree into left tree
-				insert(interval.getLeft(), interval.getRight());
-				// return the left tree
-				ProtectIt.LOGGER.debug("returning left -> {}", interval.getLeft());
-				return interval.getLeft();
+				node = node.withRight(delete(node.right, target));
 			}
 		}
-		return interval;
+		return balance(node);
 	}
 
 	/**
-	 * 
-	 * @param target
-	 * @param uuid
+	 *
+	 * @param node
+	 * @return
 	 */
-	public synchronized List<Interval> delete(Interval target, String uuid) {
-		ProtectIt.LOGGER.debug("uuid -> {}", uuid);
-		List<Interval> removed = Lists.newArrayList();
-		List<Interval> list = getOverlapping(getRoot(), target, false);
-		ProtectIt.LOGGER.debug("list of overlappings -> {}", list);
-		list.forEach(i -> {
-			ProtectIt.LOGGER.debug("overlapping interval -> {}", i);
-			if (i.getData() != null && i.getData().getOwner().getUuid().equalsIgnoreCase(uuid)) {
-				Interval interval = delete(getRoot(), i);
-				ProtectIt.LOGGER.debug("removed interval");
-				removed.add(interval);
-			}
-		});
-		return removed;
+	private static Node deleteMin(Node node) {
+		if (node.left == null) {
+			return null;
+		}
+		if (!isRed(node.left) && !isRed(node.left.left)) {
+			node = moveRedLeft(node);
+		}
+		return balance(node.withLeft(deleteMin(node.left)));
 	}
-	
+
 	/**
-	 * 
-	 * @param interval
-	 * @param predicate
+	 *
+	 * @param target
+	 * @return
 	 */
-	public synchronized Interval delete(Interval interval, Predicate<Interval> predicate) {
-		if (interval == null) {
-			return interval;
-		}
-		
-		if (predicate.test(interval)) {
-			return delete(interval);
-		}
-		
-		Interval deletedInterval = null;		
-		deletedInterval = this.delete(interval.getLeft(), predicate);
-
-		if (deletedInterval == null) {
-			deletedInterval = this.delete(interval.getRight(), predicate);
-		}		
-		return deletedInterval;
-	}
-	
-	// better version of above
-	public synchronized void delete2(Interval target, Predicate<Interval> predicate) {
-		List<Interval> list = getOverlapping(getRoot(), target, false);
-		list.forEach(i -> {
-			if (predicate.test(target)) {
-				delete(target);
+	@Override
+	public boolean contains(Interval target) {
+		return contains(root, target);
+	}
+
+	private static boolean contains(Node node, Interval target) {
+		while (node != null) {
+			int cmp = target.compareTo(node.interval);
+			if (cmp == 0) {
+				return true;
 			}
-		});
+			node = cmp < 0 ? node.left : node.right;
+		}
+		return false;
 	}
-	
-	/**
-	 * 
-	 * @param interval
+
+	/*
+	 * red-black tree helpers. each returns a new node and never modifies its arguments.
 	 */
-	public List<String> toStringList(Interval interval) {
+	private static boolean isRed(Node node) {
+		return node != null && node.red;
+	}
+
+	private static Node blacken(Node node) {
+		return isRed(node) ? node.withColor(BLACK) : node;
+	}
+
+	private static Node min(Node node) {
+		while (node.left != null) {
+			node = node.left;
+		}
+		return node;
+	}
+
+	private static Node rotateLeft(Node node) {
+		Node x = node.right;
+		return new Node(x.interval, new Node(node.interval, node.left, x.left, RED), x.right, node.red);
+	}
+
+	private static Node rotateRight(Node node) {
+		Node x = node.left;
+		return new Node(x.interval, x.left, new Node(node.interval, x.right, node.right, RED), node.red);
+	}
+
+	private static Node flipColors(Node node) {
+		return new Node(node.interval, node.left.withColor(!node.left.red), node.right.withColor(!node.right.red), !node.red);
+	}
+
+	private static Node moveRedLeft(Node node) {
+		node = flipColors(node);
+		if (isRed(node.right.left)) {
+			node = rotateLeft(node.withRight(rotateRight(node.right)));
+			node = flipColors(node);
+		}
+		return node;
+	}
+
+	private static Node moveRedRight(Node node) {
+		node = flipColors(node);
+		if (isRed(node.left.left)) {
+			node = rotateRight(node);
+			node = flipColors(node);
+		}
+		return node;
+	}
+
+	private static Node balance(Node node) {
+		if (isRed(node.right) && !isRed(node.left)) {
+			node = rotateLeft(node);
+		}
+		if (isRed(node.left) && isRed(node.left.left)) {
+			node = rotateRight(node);
+		}
+		if (isRed(node.left) && isRed(node.right)) {
+			node = flipColors(node);
+		}
+		return node;
+	}
+
+	@Override
+	public List<String> toStringList() {
 		List<Interval> list = new ArrayList<>();
-		list(interval, list);
-		
+		list(list);
+
 		List<String> display = new ArrayList<>();
 		list.forEach(element -> {
 			display.add(String.format("[%s] -> [%s]: owner -> %s (%s)", element.getCoords1().toShortString(), element.getCoords2().toShortString(), element.getData().getOwner().getName(), element.getData().getOwner().getUuid()));
 		});
-		
+
 		return display;
 	}
-	
-	/**
-	 * 
-	 * @param interval
-	 * @param intervals
-	 */
-	public synchronized void list(Interval interval, List<Interval> intervals) {
-		if (interval == null) {
-			return;
-		}
 
-		if (interval.getLeft() != null) {
-			list(interval.getLeft(), intervals);
-		}
-
-		intervals.add(interval);
-		
-		if (interval.getRight() != null) {
-			list(interval.getRight(), intervals);
-		}
-	}
-	
 	/**
-	 * 
-	 * @param interval
-	 * @param predicate
+	 * In-order listing of the tree.
 	 * @param intervals
 	 */
-	public synchronized void find(Interval interval, Predicate<Interval> predicate, List<Interval> intervals) {
-		find(interval, predicate, intervals, true);
+	@Override
+	public void list(List<Interval> intervals) {
+		Node node = root;
+		Deque<Node> stack = new ArrayDeque<>();
+		while (node != null || !stack.isEmpty()) {
+			while (node != null) {
+				stack.push(node);
+				node = node.left;
+			}
+			node = stack.pop();
+			intervals.add(node.interval);
+			node = node.right;
+		}
 	}
-	
-	/**
-	 * 
-	 * @param interval
-	 * @param predicate
-	 * @param intervals
-	 * @param findFirst find first occurrence only
-	 * @return whether an overlap was found in this subtree
-	 */
-	public synchronized boolean find(Interval interval, Predicate<Interval> predicate, List<Interval> intervals, boolean findFirst) {
+
+	@Override
+	public boolean find(Predicate<Interval> predicate, List<Interval> intervals, boolean findFirst) {
 		boolean isFound = false;
-		
-		if (interval == null) {
+		Node node = root;
+		if (node == null) {
 			return false;
 		}
 
-		// check first to optimize findFirst search
-		// add the interval to list
-		if (predicate.test(interval)) {
-			intervals.add(interval);
-			if (findFirst) {
-				return true;
+		Deque<Node> stack = new ArrayDeque<>();
+		stack.push(node);
+		while (!stack.isEmpty()) {
+			node = stack.pop();
+			if (predicate.test(node.interval)) {
+				intervals.add(node.interval);
+				isFound = true;
+				if (findFirst) {
+					return true;
+				}
 			}
-		}
-		
-		if (interval.getLeft() != null) {
-			isFound = find(interval.getLeft(), predicate, intervals, findFirst);
-			if (isFound && findFirst) {
-				return true;
+			// push right first so that left is visited first
+			if (node.right != null) {
+				stack.push(node.right);
 			}
-		}
-
-		if (interval.getRight() != null) {
-			isFound = find(interval.getRight(), predicate, intervals, findFirst);
-			if (isFound && findFirst) {
-				return true;
+			if (node.left != null) {
+				stack.push(node.left);
 			}
 		}
 		return isFound;
 	}
 
-	public List<Interval> getOverlapping(Interval interval, Interval testInterval, boolean findFast) {
-		return getOverlapping(interval, testInterval, true, true);
-	}	
-	
 	/**
 	 * public wrapper to ensure that the return value is non-null
-	 * @param interval
 	 * @param testInterval
 	 */
-	public synchronized List<Interval> getOverlapping(Interval interval, Interval testInterval, boolean findFast, boolean includeBorder) {
+	@Override
+	public List<Interval> getOverlapping(Interval testInterval, boolean findFast, boolean includeBorder) {
 		List<Interval> results = new ArrayList<>();
-		if (includeBorder) {
-			checkOverlap(interval, testInterval, results, findFast);
-		}
-		else {
-			checkOverlapNoBorder(interval, testInterval, results, findFast);
-		}
+		checkOverlap(root, testInterval, results, findFast, includeBorder);
 		return results;
 	}
 
-
 	/**
-	 * 
-	 * @param interval
+	 * Iterative overlap search. Subtrees are pruned using their min/max x-axis extents,
+	 * and right subtrees are skipped once the node start is past the end of the test interval.
+	 * @param node
 	 * @param testInterval
 	 * @param results
-	 * @param findFirst find first occurrence only
-	 * @return whether an overlap was found in this subtree
+	 * @param findFast find first occurrence only
+	 * @param includeBorder whether touching borders count as an overlap
+	 * @return whether an overlap was found
 	 */
-	private boolean checkOverlap(Interval interval, Interval testInterval, List<Interval> results, boolean findFast) {
-		if (interval == null) {
+	private static boolean checkOverlap(Node node, Interval testInterval, List<Interval> results, boolean findFast, boolean includeBorder) {
+		if (node == null) {
 			return false;
 		}
+		boolean isFound = false;
+		Deque<Node> stack = new ArrayDeque<>();
+		stack.push(node);
+		while (!stack.isEmpty()) {
+			node = stack.pop();
+
+			// short-circuit
+			if (testInterval.getStart() > node.max || testInterval.getEnd() < node.min) {
+				continue;
+			}
 
-		// short-circuit
-        if(testInterval.getStart() > interval.getMax() || testInterval.getEnd() < interval.getMin()) {
-        	return false;
-        }
-
-		if (!((interval.getStart() > testInterval.getEnd()) || (interval.getEnd() < testInterval.getStart()))) {
-			// x-axis overlaps, check z-axis
-			if (!((interval.getStartZ() > testInterval.getEndZ()) || (interval.getEndZ() < testInterval.getStartZ()))) {
-				// z-axis overlaps, check y-axis
-				if (!((interval.getStartY() > testInterval.getEndY()) || (interval.getEndY() < testInterval.getStartY()))) {
-
-					results.add(interval);
-					if (findFast) {
-						return true;
-					}				
+			if (includeBorder ? overlaps(node.interval, testInterval) : overlapsNoBorder(node.interval, testInterval)) {
+				results.add(node.interval);
+				isFound = true;
+				if (findFast) {
+					return true;
 				}
 			}
-		}
 
-		// walk the left branch
-		if ((interval.getLeft() != null) && (interval.getLeft().getMax() >= testInterval.getStart())) {
-			if (this.checkOverlap(interval.getLeft(), testInterval, results, findFast) && findFast) {
-				return true;
+			// walk the right branch. all starts in the right subtree are >= this start
+			if (node.right != null && node.interval.getStart() <= testInterval.getEnd()) {
+				stack.push(node.right);
+			}
+			// walk the left branch
+			if (node.left != null && node.left.max >= testInterval.getStart()) {
+				stack.push(node.left);
 			}
 		}
+		return isFound;
+	}
 
-		// walk the right branch
-		if (this.checkOverlap(interval.getRight(), testInterval, results, findFast) && findFast) {
-			return true;
-		}
-		
-		return false;
+	@Override
+	public Interval getContaining(int x, int y, int z) {
+		return getContaining(root, x, y, z);
 	}
-	
+
 	/**
-	 * 
-	 * @param interval
-	 * @param testInterval
-	 * @param results
-	 * @param findFirst find first occurrence only
-	 * @return whether an overlap was found in this subtree
+	 * Allocation-free point search. Recursion only descends the bounded height of the tree.
+	 * @param node
+	 * @param x
+	 * @param y
+	 * @param z
+	 * @return the first interval that contains the point, or null
 	 */
-	private boolean checkOverlapNoBorder(Interval interval, Interval testInterval, List<Interval> results, boolean findFast) {
-		if (interval == null) {
-			return false;
+	private static Interval getContaining(Node node, int x, int y, int z) {
+		if (node == null || x > node.max || x < node.min) {
+			return null;
 		}
-
-		// short-circuit
-        if(testInterval.getStart() > interval.getMax() || testInterval.getEnd() < interval.getMin()) { //TESTING - adding >=, <= instead of >, <
-        	return false;
-        }
-        
-        // TODO add logging
-//    	ProtectIt.LOGGER.debug("testing: interval -> {}, test -> {}", interval, testInterval);
-//    	ProtectIt.LOGGER.debug("testing x: i.startx -> {}, t.endx -> {}, i.endx -> {}, t.startx -> {}", interval.getStart(), testInterval.getEnd(),
-//    			interval.getEnd(), testInterval.getStart());
-		if (!((interval.getStart() >= testInterval.getEnd()) || (interval.getEnd() <= testInterval.getStart()))) { // TESTING - adding >= and <= to all comparisons
-//			ProtectIt.LOGGER.debug("has x overlap");
-//	    	ProtectIt.LOGGER.debug("testing z: i.startz -> {}, t.endz -> {}, i.endz -> {}, t.startz -> {}", interval.getStartZ(), testInterval.getEndZ(),
-//	    			interval.getEndZ(), testInterval.getStartZ());
-			// x-axis overlaps, check z-axis
-			if (!((interval.getStartZ() >= testInterval.getEndZ()) || (interval.getEndZ() <= testInterval.getStartZ()))) {
-//				ProtectIt.LOGGER.debug("has z overlap");
-//		    	ProtectIt.LOGGER.debug("testing y: i.starty -> {}, t.endy -> {}, i.endy -> {}, t.starty -> {}", interval.getStartY(), testInterval.getEndY(),
-//		    			interval.getEndY(), testInterval.getStartY());
-				// z-axis overlaps, check y-axis
-				if (!((interval.getStartY() >= testInterval.getEndY()) || (interval.getEndY() <= testInterval.getStartY()))) {
-//					ProtectIt.LOGGER.debug("has y overlap - adding to overlaps");
-					results.add(interval);
-					if (findFast) {
-						return true;
-					}				
-				}
-			}
+		Interval found = getContaining(node.left, x, y, z);
+		if (found != null) {
+			return found;
 		}
-
-		// walk the left branch
-		if ((interval.getLeft() != null) && (interval.getLeft().getMax() > testInterval.getStart())) { // TESTING replaced >= with >
-			if (this.checkOverlapNoBorder(interval.getLeft(), testInterval, results, findFast) && findFast) {
-				return true;
-			}
+		if (node.interval.contains(x, y, z)) {
+			return node.interval;
 		}
-
-		// walk the right branch
-		if (this.checkOverlapNoBorder(interval.getRight(), testInterval, results, findFast) && findFast) {
-			return true;
+		// all starts in the right subtree are >= this start
+		if (x < node.interval.getStart()) {
+			return null;
 		}
-		
-		return false;
+		return getContaining(node.right, x, y, z);
 	}
 
 	/**
-	 * 
-	 * @param tag
+	 *
 	 * @param interval
+	 * @param testInterval
 	 * @return
 	 */
-	public synchronized CompoundTag save(CompoundTag tag) {
-		if (getRoot() == null) {
+	public static boolean overlaps(Interval interval, Interval testInterval) {
+		return !((interval.getStart() > testInterval.getEnd()) || (interval.getEnd() < testInterval.getStart()))
+				&& !((interval.getStartZ() > testInterval.getEndZ()) || (interval.getEndZ() < testInterval.getStartZ()))
+				&& !((interval.getStartY() > testInterval.getEndY()) || (interval.getEndY() < testInterval.getStartY()));
+	}
+
+	/**
+	 *
+	 * @param interval
+	 * @param testInterval
+	 * @return
+	 */
+	public static boolean overlapsNoBorder(Interval interval, Interval testInterval) {
+		return !((interval.getStart() >= testInterval.getEnd()) || (interval.getEnd() <= testInterval.getStart()))
+				&& !((interval.getStartZ() >= testInterval.getEndZ()) || (interval.getEndZ() <= testInterval.getStartZ()))
+				&& !((interval.getStartY() >= testInterval.getEndY()) || (interval.getEndY() <= testInterval.getStartY()));
+	}
+
+	/**
+	 * Saves the tree in the nested interval format.
+	 * @param tag
+	 * @return
+	 */
+	public CompoundTag save(CompoundTag tag) {
+		Node node = root;
+		if (node == null) {
 			return tag;
 		}
-		getRoot().save(tag);	        	        
+		toInterval(node).save(tag);
 		return tag;
 	}
 
 	/**
-	 * 
+	 * Build a detached copy of the subtree as linked intervals, for saving.
+	 * The shared intervals in the tree are never linked.
+	 * @param node
+	 * @return
+	 */
+	private static Interval toInterval(Node node) {
+		if (node == null) {
+			return null;
+		}
+		Interval interval = new Interval(node.interval.getCoords1(), node.interval.getCoords2(), node.interval.getData());
+		interval.setMin(node.min);
+		interval.setMax(node.max);
+		interval.setLeft(toInterval(node.left));
+		interval.setRight(toInterval(node.right));
+		return interval;
+	}
+
+	/**
+	 * Loads a saved tree and rebuilds it so that the tree is balanced.
 	 * @param tag
 	 */
 	public synchronized void load(CompoundTag tag) {
-		Interval root = Interval.load(tag);
-		if (!root.equals(Interval.EMPTY)) {
-			setRoot(root);
+		Interval loaded = Interval.load(tag);
+		if (!loaded.equals(Interval.EMPTY)) {
+			List<Interval> intervals = new ArrayList<>();
+			Deque<Interval> stack = new ArrayDeque<>();
+			stack.push(loaded);
+			while (!stack.isEmpty()) {
+				Interval interval = stack.pop();
+				if (interval.getLeft() != null) {
+					stack.push(interval.getLeft());
+				}
+				if (interval.getRight() != null) {
+					stack.push(interval.getRight());
+				}
+				interval.setLeft(null);
+				interval.setRight(null);
+				intervals.add(interval);
+			}
+			build(intervals);
+			ProtectIt.LOGGER.debug("loaded {} intervals into tree", size());
 		}
 	}
 
-	public void clear() {
-		setRoot(null);
+	@Override
+	public synchronized void clear() {
+		root = null;
 	}
 
-	public synchronized Interval getRoot() {
-		return root;
+	@Override
+	public int size() {
+		Node node = root;
+		return node == null ? 0 : node.size;
 	}
 
-	public synchronized void setRoot(Interval root) {
-		this.root = root;
+	/**
+	 * O(1) frozen copy of the current version of the tree.
+	 * Mutating the copy does not affect this tree, and vice versa.
+	 */
+	@Override
+	public ProtectedIntervalTree snapshot() {
+		return new ProtectedIntervalTree(root);
+	}
+
+	/**
+	 * An immutable tree node. The subtree min/max x-axis extents and size are computed on construction.
+	 */
+	private static final class Node {
+		final Interval interval;
+		final Node left;
+		final Node right;
+		final boolean red;
+		final int min;
+		final int max;
+		final int size;
+
+		Node(Interval interval, Node left, Node right, boolean red) {
+			this.interval = interval;
+			this.left = left;
+			this.right = right;
+			this.red = red;
+			int min = interval.getStart();
+			int max = interval.getEnd();
+			int size = 1;
+			if (left != null) {
+				min = Math.min(min, left.min);
+				max = Math.max(max, left.max);
+				size += left.size;
+			}
+			if (right != null) {
+				min = Math.min(min, right.min);
+				max = Math.max(max, right.max);
+				size += right.size;
+			}
+			this.min = min;
+			this.max = max;
+			this.size = size;
+		}
+
+		Node withLeft(Node left) {
+			return new Node(interval, left, right, red);
+		}
+
+		Node withRight(Node right) {
+			return new Node(interval, left, right, red);
+		}
+
+		Node withColor(boolean red) {
+			return new Node(interval, left, right, red);
+		}
 	}
 }
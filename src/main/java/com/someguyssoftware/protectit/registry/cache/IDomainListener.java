@@ -0,0 +1,40 @@
+/*
+ * This file is part of  Protect It.
+ * Copyright (c) 2023 Mark Gottschling (gottsch)
+ *
+ * All rights reserved.
+ *
+ * Protect It is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Protect It is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Protect It.  If not, see <http://www.gnu.org/licenses/lgpl>.
+ */
+package com.someguyssoftware.protectit.registry.cache;
+
+/**
+ * Told of the blocks whose protection domain may have changed, ie. the areas the section cache invalidates.
+ * Called on the thread that changed the registry.
+ *
+ * @author Mark Gottschling on Mar 14, 2023
+ *
+ */
+public interface IDomainListener {
+
+	/**
+	 * The protection domain of the blocks within the bounds may have changed.
+	 */
+	void invalidate(int minX, int minY, int minZ, int maxX, int maxY, int maxZ);
+
+	/**
+	 * The protection domain of any block may have changed.
+	 */
+	void clear();
+}
@@ -0,0 +1,109 @@
+/*
+ * This file is part of  Protect It.
+ * Copyright (c) 2023 Mark Gottschling (gottsch)
+ *
+ * All rights reserved.
+ *
+ * Protect It is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Protect It is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Protect It.  If not, see <http://www.gnu.org/licenses/lgpl>.
+ */
+package com.someguyssoftware.protectit.registry.cache;
+
+import java.util.Arrays;
+
+/**
+ * A tiny direct-mapped memo of protection decisions keyed on (player id, packed block pos),
+ * for collapsing the duplicate checks made within a single tick, ie. right click firing once per hand.
+ * Entries are only valid for the registry epoch they were stored in, and {@link #clear()} is O(1).
+ * <p>
+ * Not thread-safe. Only use from the server thread.
+ *
+ * @author Mark Gottschling on Mar 9, 2023
+ *
+ */
+public class ProtectionMemo {
+	public static final int MISS = -1;
+	public static final int NOT_PROTECTED = 0;
+	public static final int PROTECTED = 1;
+
+	private final int shift;
+	private final long[] positions;
+	private final int[] players;
+	private final byte[] results;
+	// an entry is only valid if its stamp matches the current stamp
+	private final int[] stamps;
+	private int stamp = 1;
+	private long epoch;
+
+	/**
+	 *
+	 * @param bits the table holds 2^bits entries
+	 */
+	public ProtectionMemo(int bits) {
+		int size = 1 << bits;
+		this.shift = 64 - bits;
+		this.positions = new long[size];
+		this.players = new int[size];
+		this.results = new byte[size];
+		this.stamps = new int[size];
+	}
+
+	/**
+	 *
+	 * @param playerId
+	 * @param pos
+	 * @param epoch the current registry epoch
+	 * @return PROTECTED, NOT_PROTECTED or MISS
+	 */
+	public int get(int playerId, long pos, long epoch) {
+		if (epoch != this.epoch) {
+			return MISS;
+		}
+		int slot = slot(playerId, pos);
+		if (stamps[slot] == stamp && positions[slot] == pos && players[slot] == playerId) {
+			return results[slot];
+		}
+		return MISS;
+	}
+
+	/**
+	 *
+	 * @param playerId
+	 * @param pos
+	 * @param epoch the registry epoch the decision was made in
+	 * @param isProtected
+	 */
+	public void put(int playerId, long pos, long epoch, boolean isProtected) {
+		if (epoch != this.epoch) {
+			clear();
+			this.epoch = epoch;
+		}
+		int slot = slot(playerId, pos);
+		stamps[slot] = stamp;
+		positions[slot] = pos;
+		players[slot] = playerId;
+		results[slot] = (byte)(isProtected ? PROTECTED : NOT_PROTECTED);
+	}
+
+	public void clear() {
+		stamp++;
+		if (stamp == 0) {
+			Arrays.fill(stamps, 0);
+			stamp = 1;
+		}
+	}
+
+	private int slot(int playerId, long pos) {
+		return (int)(((pos ^ ((long)playerId << 32)) * 0x9E3779B97F4A7C15L) >>> shift);
+	}
+}
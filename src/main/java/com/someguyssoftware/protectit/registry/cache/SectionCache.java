@@ -0,0 +1,142 @@
+/*
+ * This file is part of  Protect It.
+ * Copyright (c) 2023 Mark Gottschling (gottsch)
+ *
+ * All rights reserved.
+ *
+ * Protect It is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Protect It is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Protect It.  If not, see <http://www.gnu.org/licenses/lgpl>.
+ */
+package com.someguyssoftware.protectit.registry.cache;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import net.minecraft.core.SectionPos;
+
+/**
+ * A bounded, least-recently-used cache of chunk section summaries, keyed by packed section pos.
+ * Summaries are player-independent, so one entry serves every player in the section.
+ * <p>
+ * Misses are loaded outside the lock. A load that started before an invalidation is not cached,
+ * so a summary computed from a stale index is never stored.
+ *
+ * @author Mark Gottschling on Mar 7, 2023
+ *
+ */
+public class SectionCache {
+	private static final int SECTION_SHIFT = 4;
+
+	private final int capacity;
+	private final Loader loader;
+	private final Long2ObjectLinkedOpenHashMap<SectionSummary> sections = new Long2ObjectLinkedOpenHashMap<>();
+	// incremented on every invalidation
+	private long generation;
+
+	/**
+	 *
+	 * @param capacity the max number of sections
+	 * @param loader
+	 */
+	public SectionCache(int capacity, Loader loader) {
+		this.capacity = capacity;
+		this.loader = loader;
+	}
+
+	/**
+	 * Get the summary of the section that contains the block.
+	 * @param x
+	 * @param y
+	 * @param z
+	 * @return
+	 */
+	public SectionSummary get(int x, int y, int z) {
+		int sectionX = x >> SECTION_SHIFT;
+		int sectionY = y >> SECTION_SHIFT;
+		int sectionZ = z >> SECTION_SHIFT;
+		long key = SectionPos.asLong(sectionX, sectionY, sectionZ);
+		long loadGeneration;
+		synchronized (this) {
+			SectionSummary summary = sections.getAndMoveToLast(key);
+			if (summary != null) {
+				return summary;
+			}
+			loadGeneration = generation;
+		}
+
+		SectionSummary summary = loader.load(sectionX, sectionY, sectionZ);
+		synchronized (this) {
+			if (loadGeneration == generation) {
+				sections.putAndMoveToLast(key, summary);
+				if (sections.size() > capacity) {
+					sections.removeFirst();
+				}
+			}
+		}
+		return summary;
+	}
+
+	/**
+	 * Remove the sections that intersect the block bounds.
+	 * Walks the section range or the cached entries, whichever is smaller.
+	 */
+	public synchronized void invalidate(int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+		generation++;
+		if (sections.isEmpty()) {
+			return;
+		}
+		int minSectionX = minX >> SECTION_SHIFT;
+		int minSectionY = minY >> SECTION_SHIFT;
+		int minSectionZ = minZ >> SECTION_SHIFT;
+		int maxSectionX = maxX >> SECTION_SHIFT;
+		int maxSectionY = maxY >> SECTION_SHIFT;
+		int maxSectionZ = maxZ >> SECTION_SHIFT;
+
+		long count = (long)(maxSectionX - minSectionX + 1) * (maxSectionY - minSectionY + 1) * (maxSectionZ - minSectionZ + 1);
+		if (count <= sections.size()) {
+			for (int x = minSectionX; x <= maxSectionX; x++) {
+				for (int y = minSectionY; y <= maxSectionY; y++) {
+					for (int z = minSectionZ; z <= maxSectionZ; z++) {
+						sections.remove(SectionPos.asLong(x, y, z));
+					}
+				}
+			}
+		}
+		else {
+			LongIterator iterator = sections.keySet().iterator();
+			while (iterator.hasNext()) {
+				long key = iterator.nextLong();
+				int x = SectionPos.x(key);
+				int y = SectionPos.y(key);
+				int z = SectionPos.z(key);
+				if (x >= minSectionX && x <= maxSectionX && y >= minSectionY && y <= maxSectionY
+						&& z >= minSectionZ && z <= maxSectionZ) {
+					iterator.remove();
+				}
+			}
+		}
+	}
+
+	public synchronized void clear() {
+		generation++;
+		sections.clear();
+	}
+
+	public synchronized int size() {
+		return sections.size();
+	}
+
+	@FunctionalInterface
+	public interface Loader {
+		SectionSummary load(int sectionX, int sectionY, int sectionZ);
+	}
+}
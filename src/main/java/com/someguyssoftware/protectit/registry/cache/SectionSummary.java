@@ -0,0 +1,67 @@
+/*
+ * This file is part of  Protect It.
+ * Copyright (c) 2023 Mark Gottschling (gottsch)
+ *
+ * All rights reserved.
+ *
+ * Protect It is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Protect It is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Protect It.  If not, see <http://www.gnu.org/licenses/lgpl>.
+ */
+package com.someguyssoftware.protectit.registry.cache;
+
+import com.someguyssoftware.protectit.claim.Property;
+import com.someguyssoftware.protectit.registry.bst.Interval;
+
+/**
+ * The protection state of a 16x16x16 chunk section: unclaimed, fully covered by a single claim, or mixed.
+ *
+ * @author Mark Gottschling on Mar 7, 2023
+ *
+ */
+public final class SectionSummary {
+	public static final SectionSummary UNCLAIMED = new SectionSummary(null, null);
+	public static final SectionSummary MIXED = new SectionSummary(null, null);
+
+	private final Interval interval;
+	private final Property claim;
+
+	/**
+	 * A section that is fully covered by a single claim.
+	 * @param interval
+	 * @param claim the claim, or null if the interval has no claim
+	 */
+	public SectionSummary(Interval interval, Property claim) {
+		this.interval = interval;
+		this.claim = claim;
+	}
+
+	public boolean isUnclaimed() {
+		return this == UNCLAIMED;
+	}
+
+	public boolean isMixed() {
+		return this == MIXED;
+	}
+
+	/**
+	 *
+	 * @return the covering interval, or null if the section is unclaimed or mixed
+	 */
+	public Interval getInterval() {
+		return interval;
+	}
+
+	public Property getClaim() {
+		return claim;
+	}
+}
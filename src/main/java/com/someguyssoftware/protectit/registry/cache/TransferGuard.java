@@ -0,0 +1,266 @@
+/*
+ * This file is part of  Protect It.
+ * Copyright (c) 2023 Mark Gottschling (gottsch)
+ *
+ * All rights reserved.
+ *
+ * Protect It is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Protect It is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Protect It.  If not, see <http://www.gnu.org/licenses/lgpl>.
+ */
+package com.someguyssoftware.protectit.registry.cache;
+
+import java.util.HashSet;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import com.someguyssoftware.protectit.registry.IBlockProtectionRegistry;
+import com.someguyssoftware.protectit.registry.ProtectionRegistries;
+
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.SectionPos;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.entity.vehicle.MinecartHopper;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.block.DispenserBlock;
+import net.minecraft.world.level.block.HopperBlock;
+import net.minecraft.world.level.block.entity.BlockEntity;
+import net.minecraft.world.level.block.entity.DispenserBlockEntity;
+import net.minecraft.world.level.block.entity.HopperBlockEntity;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.chunk.LevelChunk;
+import net.minecraft.world.level.levelgen.structure.BoundingBox;
+
+/**
+ * Disables the hoppers, droppers, dispensers and hopper minecarts of a level that would move items across
+ * a claim border, ie. pull from or push into a protected block in another protection domain.
+ * There is no item transfer event, so the transfer blocks are checked when a claim changes, when their chunk
+ * loads and when they are placed, and the blocked ones are held at the start of every level tick:
+ * <ul>
+ * <li>a hopper is put on a transfer cooldown that does not run out. Vanilla cooldowns are at most 8 ticks,
+ * so a longer one is known to be set here, and is reset once the hopper no longer crosses a border.</li>
+ * <li>a dropper or dispenser has its scheduled tick, ie. its redstone trigger, cleared before it runs.</li>
+ * <li>a hopper minecart is disabled while the block above it is across a border.</li>
+ * </ul>
+ * The registry is only replaced wholesale before the level's chunks load, so a cleared registry only re-checks
+ * the blocked dispensers, and the loaded chunks are found again as they load.
+ * <p>
+ * Changes may come from any thread. Everything else is server thread only.
+ *
+ * @author Mark Gottschling on Mar 14, 2023
+ *
+ */
+public class TransferGuard implements IDomainListener {
+	private static final int BLOCKED_COOLDOWN = Integer.MAX_VALUE;
+
+	private final ServerLevel level;
+	// the changed block bounds, as min x, y, z and max x, y, z
+	private final Queue<int[]> changes = new ConcurrentLinkedQueue<>();
+	// the loaded chunks, by packed chunk pos
+	private final Queue<Long> loadedChunks = new ConcurrentLinkedQueue<>();
+	private volatile boolean cleared;
+	// the blocked droppers and dispensers, by packed pos
+	private final LongOpenHashSet blockedDispensers = new LongOpenHashSet();
+	private final Set<MinecartHopper> carts = new HashSet<>();
+	private final Set<MinecartHopper> blockedCarts = new HashSet<>();
+
+	/**
+	 *
+	 * @param level the level of the block registry
+	 */
+	public TransferGuard(ServerLevel level) {
+		this.level = level;
+	}
+
+	public ServerLevel getLevel() {
+		return level;
+	}
+
+	@Override
+	public void invalidate(int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+		changes.add(new int[] {minX, minY, minZ, maxX, maxY, maxZ});
+	}
+
+	@Override
+	public void clear() {
+		cleared = true;
+	}
+
+	/**
+	 * Check the transfer blocks in the chunk at the start of the next tick.
+	 * @param chunkPos
+	 */
+	public void onChunkLoad(ChunkPos chunkPos) {
+		loadedChunks.add(chunkPos.toLong());
+	}
+
+	/**
+	 * Check the transfer block at the start of the next tick, once its block entity exists.
+	 * @param pos
+	 */
+	public void onPlace(BlockPos pos) {
+		invalidate(pos.getX(), pos.getY(), pos.getZ(), pos.getX(), pos.getY(), pos.getZ());
+	}
+
+	public void addCart(MinecartHopper cart) {
+		carts.add(cart);
+	}
+
+	public void removeCart(MinecartHopper cart) {
+		carts.remove(cart);
+		blockedCarts.remove(cart);
+	}
+
+	/**
+	 * Called at the start of the level tick, before the scheduled ticks, block entities and entities run.
+	 */
+	public void tick() {
+		if (cleared) {
+			cleared = false;
+			recheckDispensers();
+		}
+		int[] change;
+		while ((change = changes.poll()) != null) {
+			checkArea(change[0], change[1], change[2], change[3], change[4], change[5]);
+		}
+		Long chunkPos;
+		while ((chunkPos = loadedChunks.poll()) != null) {
+			LevelChunk chunk = level.getChunkSource().getChunkNow(ChunkPos.getX(chunkPos), ChunkPos.getZ(chunkPos));
+			if (chunk != null) {
+				checkChunk(chunk, Integer.MIN_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE);
+			}
+		}
+		if (!blockedDispensers.isEmpty()) {
+			holdDispensers();
+		}
+		if (!carts.isEmpty()) {
+			checkCarts();
+		}
+	}
+
+	/**
+	 * Check the transfer blocks in, and next to, the changed bounds, in the loaded chunks.
+	 */
+	private void checkArea(int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+		// a transfer block next to the bounds moves items into or out of them
+		minX--; minY--; minZ--;
+		maxX++; maxY++; maxZ++;
+		for (int chunkX = SectionPos.blockToSectionCoord(minX); chunkX <= SectionPos.blockToSectionCoord(maxX); chunkX++) {
+			for (int chunkZ = SectionPos.blockToSectionCoord(minZ); chunkZ <= SectionPos.blockToSectionCoord(maxZ); chunkZ++) {
+				LevelChunk chunk = level.getChunkSource().getChunkNow(chunkX, chunkZ);
+				if (chunk != null) {
+					checkChunk(chunk, minX, minY, minZ, maxX, maxY, maxZ);
+				}
+			}
+		}
+	}
+
+	private void checkChunk(LevelChunk chunk, int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+		for (BlockEntity blockEntity : chunk.getBlockEntities().values()) {
+			BlockPos pos = blockEntity.getBlockPos();
+			if (pos.getX() >= minX && pos.getY() >= minY && pos.getZ() >= minZ
+					&& pos.getX() <= maxX && pos.getY() <= maxY && pos.getZ() <= maxZ) {
+				check(blockEntity);
+			}
+		}
+	}
+
+	private void check(BlockEntity blockEntity) {
+		BlockPos pos = blockEntity.getBlockPos();
+		BlockState state = blockEntity.getBlockState();
+		if (blockEntity instanceof HopperBlockEntity && state.getBlock() instanceof HopperBlock) {
+			HopperBlockEntity hopper = (HopperBlockEntity) blockEntity;
+			if (isCrossing(pos, pos.above()) || isCrossing(pos, pos.relative(state.getValue(HopperBlock.FACING)))) {
+				hopper.setCooldown(BLOCKED_COOLDOWN);
+				hopper.setChanged();
+			}
+			else if (hopper.isOnCustomCooldown()) {
+				hopper.setCooldown(0);
+				hopper.setChanged();
+			}
+		}
+		else if (blockEntity instanceof DispenserBlockEntity && state.getBlock() instanceof DispenserBlock) {
+			// includes droppers
+			if (isCrossing(pos, pos.relative(state.getValue(DispenserBlock.FACING)))) {
+				blockedDispensers.add(pos.asLong());
+			}
+			else {
+				blockedDispensers.remove(pos.asLong());
+			}
+		}
+	}
+
+	private void recheckDispensers() {
+		BlockPos.MutableBlockPos pos = new BlockPos.MutableBlockPos();
+		LongIterator iterator = blockedDispensers.iterator();
+		while (iterator.hasNext()) {
+			pos.set(iterator.nextLong());
+			BlockState state = level.getBlockState(pos);
+			if (!(state.getBlock() instanceof DispenserBlock)
+					|| !isCrossing(pos, pos.relative(state.getValue(DispenserBlock.FACING)))) {
+				iterator.remove();
+			}
+		}
+	}
+
+	/**
+	 * Clear the scheduled tick of each blocked dropper and dispenser, which is only scheduled when it is triggered.
+	 */
+	private void holdDispensers() {
+		BlockPos.MutableBlockPos pos = new BlockPos.MutableBlockPos();
+		LongIterator iterator = blockedDispensers.iterator();
+		while (iterator.hasNext()) {
+			pos.set(iterator.nextLong());
+			if (!level.hasChunkAt(pos)) {
+				// checked again when its chunk loads
+				iterator.remove();
+				continue;
+			}
+			BlockState state = level.getBlockState(pos);
+			if (!(state.getBlock() instanceof DispenserBlock)) {
+				iterator.remove();
+			}
+			else if (level.getBlockTicks().hasScheduledTick(pos, state.getBlock())) {
+				level.getBlockTicks().clearArea(new BoundingBox(pos));
+			}
+		}
+	}
+
+	/**
+	 * A hopper minecart pulls from the block above it, ie. 1.5 blocks above its position.
+	 */
+	private void checkCarts() {
+		for (MinecartHopper cart : carts) {
+			BlockPos source = new BlockPos(cart.getX(), cart.getY() + 1.5, cart.getZ());
+			if (isCrossing(cart.blockPosition(), source)) {
+				if (cart.isEnabled()) {
+					cart.setEnabled(false);
+					blockedCarts.add(cart);
+				}
+			}
+			else if (blockedCarts.remove(cart)) {
+				cart.setEnabled(true);
+			}
+		}
+	}
+
+	/**
+	 * Whether moving items between the positions crosses into a protected block in another protection domain.
+	 */
+	private static boolean isCrossing(BlockPos pos, BlockPos target) {
+		IBlockProtectionRegistry registry = ProtectionRegistries.block();
+		return !registry.sameProtectionDomain(pos, target) && registry.isProtected(target.getX(), target.getY(), target.getZ());
+	}
+}
@@ -0,0 +1,402 @@
+/*
+ * This file is part of  Protect It.
+ * Copyright (c) 2023 Mark Gottschling (gottsch)
+ *
+ * All rights reserved.
+ *
+ * Protect It is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Protect It is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Protect It.  If not, see <http://www.gnu.org/licenses/lgpl>.
+ */
+package com.someguyssoftware.protectit.registry.chunk;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+import com.someguyssoftware.protectit.registry.IProtectionIndex;
+import com.someguyssoftware.protectit.registry.bst.Interval;
+import com.someguyssoftware.protectit.registry.bst.ProtectedIntervalTree;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
+import net.minecraft.world.level.ChunkPos;
+
+/**
+ * A spatial hash index that maps a packed chunk key to the small array of intervals touching that chunk.
+ * A single block lookup is one hash probe plus a handful of bounds tests.
+ * <p>
+ * Intervals that span more than the chunk threshold are instead bucketed by 32x32 chunk region,
+ * and intervals spanning more than {@link #MAX_REGIONS} regions go into a single overflow bucket,
+ * so large ops-created claims do not create hundreds of chunk entries.
+ * <p>
+ * The buckets are never modified once published. Writers copy the bucket maps, whose entries are
+ * copy-on-write arrays, and publish the copy through a volatile reference, so readers do not lock.
+ *
+ * @author Mark Gottschling on Mar 4, 2023
+ *
+ */
+public class ChunkBucketIndex implements IProtectionIndex {
+	private static final Interval[] EMPTY_BUCKET = new Interval[0];
+
+	private static final int CHUNK_SHIFT = 4;
+	private static final int REGION_SHIFT = 9;
+	private static final int MAX_REGIONS = 64;
+
+	// the max number of chunks an interval can span before it is bucketed by region
+	private final int maxChunks;
+
+	private volatile Buckets buckets;
+
+	/**
+	 *
+	 * @param maxChunks
+	 */
+	public ChunkBucketIndex(int maxChunks) {
+		this(maxChunks, new Buckets());
+	}
+
+	private ChunkBucketIndex(int maxChunks, Buckets buckets) {
+		this.maxChunks = maxChunks;
+		this.buckets = buckets;
+	}
+
+	@Override
+	public synchronized void insert(Interval interval) {
+		Buckets next = buckets.copy();
+		insert(next, interval);
+		buckets = next;
+	}
+
+	private void insert(Buckets buckets, Interval interval) {
+		buckets.intervals.put(interval, interval);
+		switch (getLevel(interval)) {
+		case CHUNK:
+			forEachKey(interval, CHUNK_SHIFT, key -> buckets.chunkBuckets.put(key, add(buckets.chunkBuckets.get(key), interval)));
+			break;
+		case REGION:
+			forEachKey(interval, REGION_SHIFT, key -> buckets.regionBuckets.put(key, add(buckets.regionBuckets.get(key), interval)));
+			break;
+		default:
+			buckets.overflow = add(buckets.overflow, interval);
+		}
+	}
+
+	@Override
+	public synchronized void delete(Interval target) {
+		if (!buckets.intervals.containsKey(target)) {
+			return;
+		}
+		Buckets next = buckets.copy();
+		delete(next, target);
+		buckets = next;
+	}
+
+	private void delete(Buckets buckets, Interval target) {
+		Interval interval = buckets.intervals.remove(target);
+		if (interval == null) {
+			return;
+		}
+		switch (getLevel(interval)) {
+		case CHUNK:
+			forEachKey(interval, CHUNK_SHIFT, key -> remove(buckets.chunkBuckets, key, interval));
+			break;
+		case REGION:
+			forEachKey(interval, REGION_SHIFT, key -> remove(buckets.regionBuckets, key, interval));
+			break;
+		default:
+			buckets.overflow = remove(buckets.overflow, interval);
+		}
+	}
+
+	/**
+	 * Copies the buckets once for all targets.
+	 * @param targets
+	 */
+	@Override
+	public synchronized void deleteAll(Collection<Interval> targets) {
+		if (targets.isEmpty()) {
+			return;
+		}
+		Buckets next = buckets.copy();
+		targets.forEach(target -> delete(next, target));
+		buckets = next;
+	}
+
+	@Override
+	public synchronized void build(Collection<Interval> intervals) {
+		Buckets next = new Buckets();
+		intervals.forEach(interval -> insert(next, interval));
+		buckets = next;
+	}
+
+	@Override
+	public boolean contains(Interval target) {
+		return buckets.intervals.containsKey(target);
+	}
+
+	@Override
+	public List<Interval> getOverlapping(Interval testInterval, boolean findFast, boolean includeBorder) {
+		Buckets buckets = this.buckets;
+		List<Interval> results = new ArrayList<>();
+		Map<Interval, Interval> intervals = buckets.intervals;
+
+		// a test area larger than the whole index is cheaper to scan linearly
+		if (span(testInterval, CHUNK_SHIFT) > intervals.size()) {
+			for (Interval interval : intervals.values()) {
+				if (test(interval, testInterval, includeBorder)) {
+					results.add(interval);
+					if (findFast) {
+						return results;
+					}
+				}
+			}
+			return results;
+		}
+
+		if (checkBuckets(buckets.chunkBuckets, CHUNK_SHIFT, testInterval, results, findFast, includeBorder) && findFast) {
+			return results;
+		}
+		if (!buckets.regionBuckets.isEmpty()
+				&& checkBuckets(buckets.regionBuckets, REGION_SHIFT, testInterval, results, findFast, includeBorder) && findFast) {
+			return results;
+		}
+		for (Interval interval : buckets.overflow) {
+			if (test(interval, testInterval, includeBorder)) {
+				results.add(interval);
+				if (findFast) {
+					return results;
+				}
+			}
+		}
+		return results;
+	}
+
+	@Override
+	public Interval getContaining(int x, int y, int z) {
+		Buckets buckets = this.buckets;
+		Interval interval = getContaining(buckets.chunkBuckets.get(ChunkPos.asLong(x >> CHUNK_SHIFT, z >> CHUNK_SHIFT)), x, y, z);
+		if (interval == null && !buckets.regionBuckets.isEmpty()) {
+			interval = getContaining(buckets.regionBuckets.get(ChunkPos.asLong(x >> REGION_SHIFT, z >> REGION_SHIFT)), x, y, z);
+		}
+		if (interval == null) {
+			interval = getContaining(buckets.overflow, x, y, z);
+		}
+		return interval;
+	}
+
+	private static Interval getContaining(Interval[] bucket, int x, int y, int z) {
+		if (bucket == null) {
+			return null;
+		}
+		for (int index = 0; index < bucket.length; index++) {
+			if (bucket[index].contains(x, y, z)) {
+				return bucket[index];
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * An interval is stored in every bucket it spans, so it is only reported from the bucket
+	 * at the min corner of its intersection with the test area.
+	 */
+	private boolean checkBuckets(Long2ObjectOpenHashMap<Interval[]> buckets, int shift, Interval testInterval,
+			List<Interval> results, boolean findFast, boolean includeBorder) {
+		boolean isFound = false;
+		int minX = testInterval.getStart() >> shift;
+		int maxX = testInterval.getEnd() >> shift;
+		int minZ = testInterval.getStartZ() >> shift;
+		int maxZ = testInterval.getEndZ() >> shift;
+		for (int x = minX; x <= maxX; x++) {
+			for (int z = minZ; z <= maxZ; z++) {
+				Interval[] bucket = buckets.get(ChunkPos.asLong(x, z));
+				if (bucket == null) {
+					continue;
+				}
+				for (Interval interval : bucket) {
+					if (x != Math.max(minX, interval.getStart() >> shift) || z != Math.max(minZ, interval.getStartZ() >> shift)) {
+						continue;
+					}
+					if (test(interval, testInterval, includeBorder)) {
+						results.add(interval);
+						isFound = true;
+						if (findFast) {
+							return true;
+						}
+					}
+				}
+			}
+		}
+		return isFound;
+	}
+
+	@Override
+	public boolean find(Predicate<Interval> predicate, List<Interval> results, boolean findFirst) {
+		boolean isFound = false;
+		for (Interval interval : buckets.intervals.values()) {
+			if (predicate.test(interval)) {
+				results.add(interval);
+				isFound = true;
+				if (findFirst) {
+					return true;
+				}
+			}
+		}
+		return isFound;
+	}
+
+	@Override
+	public void list(List<Interval> results) {
+		results.addAll(buckets.intervals.values());
+	}
+
+	@Override
+	public List<String> toStringList() {
+		List<Interval> list = new ArrayList<>();
+		list(list);
+		List<String> display = new ArrayList<>();
+		list.forEach(element -> {
+			display.add(String.format("[%s] -> [%s]: owner -> %s (%s)", element.getCoords1().toShortString(), element.getCoords2().toShortString(), element.getData().getOwner().getName(), element.getData().getOwner().getUuid()));
+		});
+		return display;
+	}
+
+	@Override
+	public synchronized void clear() {
+		buckets = new Buckets();
+	}
+
+	/**
+	 * O(1), as the published buckets are never modified.
+	 */
+	@Override
+	public ChunkBucketIndex snapshot() {
+		return new ChunkBucketIndex(maxChunks, buckets);
+	}
+
+	@Override
+	public int size() {
+		return buckets.intervals.size();
+	}
+
+	/*
+	 * bucket helpers
+	 */
+	private enum Level {
+		CHUNK, REGION, OVERFLOW
+	}
+
+	private Level getLevel(Interval interval) {
+		if (span(interval, CHUNK_SHIFT) <= maxChunks) {
+			return Level.CHUNK;
+		}
+		if (span(interval, REGION_SHIFT) <= MAX_REGIONS) {
+			return Level.REGION;
+		}
+		return Level.OVERFLOW;
+	}
+
+	/**
+	 * The number of buckets the interval spans in the x/z plane.
+	 */
+	private static long span(Interval interval, int shift) {
+		long x = (long)(interval.getEnd() >> shift) - (interval.getStart() >> shift) + 1;
+		long z = (long)(interval.getEndZ() >> shift) - (interval.getStartZ() >> shift) + 1;
+		return x * z;
+	}
+
+	private static void forEachKey(Interval interval, int shift, KeyConsumer consumer) {
+		for (int x = interval.getStart() >> shift; x <= interval.getEnd() >> shift; x++) {
+			for (int z = interval.getStartZ() >> shift; z <= interval.getEndZ() >> shift; z++) {
+				consumer.accept(ChunkPos.asLong(x, z));
+			}
+		}
+	}
+
+	private static Interval[] add(Interval[] bucket, Interval interval) {
+		if (bucket == null) {
+			return new Interval[] {interval};
+		}
+		Interval[] result = new Interval[bucket.length + 1];
+		System.arraycopy(bucket, 0, result, 0, bucket.length);
+		result[bucket.length] = interval;
+		return result;
+	}
+
+	private static Interval[] remove(Interval[] bucket, Interval interval) {
+		for (int index = 0; index < bucket.length; index++) {
+			if (bucket[index] == interval) {
+				Interval[] result = new Interval[bucket.length - 1];
+				System.arraycopy(bucket, 0, result, 0, index);
+				System.arraycopy(bucket, index + 1, result, index, bucket.length - index - 1);
+				return result;
+			}
+		}
+		return bucket;
+	}
+
+	private static void remove(Long2ObjectOpenHashMap<Interval[]> buckets, long key, Interval interval) {
+		Interval[] bucket = buckets.get(key);
+		if (bucket == null) {
+			return;
+		}
+		bucket = remove(bucket, interval);
+		if (bucket.length == 0) {
+			buckets.remove(key);
+		}
+		else {
+			buckets.put(key, bucket);
+		}
+	}
+
+	private static boolean test(Interval interval, Interval testInterval, boolean includeBorder) {
+		return includeBorder ? ProtectedIntervalTree.overlaps(interval, testInterval) : ProtectedIntervalTree.overlapsNoBorder(interval, testInterval);
+	}
+
+	@FunctionalInterface
+	private interface KeyConsumer {
+		void accept(long key);
+	}
+
+	/**
+	 * The bucket maps, only modified by a writer before they are published.
+	 */
+	private static final class Buckets {
+		final Long2ObjectOpenHashMap<Interval[]> chunkBuckets;
+		final Long2ObjectOpenHashMap<Interval[]> regionBuckets;
+		Interval[] overflow;
+		// all intervals keyed by their coords
+		final Object2ObjectOpenHashMap<Interval, Interval> intervals;
+
+		Buckets() {
+			this(new Long2ObjectOpenHashMap<>(), new Long2ObjectOpenHashMap<>(), EMPTY_BUCKET, new Object2ObjectOpenHashMap<>());
+		}
+
+		Buckets(Long2ObjectOpenHashMap<Interval[]> chunkBuckets, Long2ObjectOpenHashMap<Interval[]> regionBuckets,
+				Interval[] overflow, Object2ObjectOpenHashMap<Interval, Interval> intervals) {
+			this.chunkBuckets = chunkBuckets;
+			this.regionBuckets = regionBuckets;
+			this.overflow = overflow;
+			this.intervals = intervals;
+		}
+
+		/**
+		 * The maps are copied as flat arrays, and the buckets are shared, as they are copy-on-write.
+		 */
+		Buckets copy() {
+			return new Buckets(chunkBuckets.clone(), regionBuckets.clone(), overflow, intervals.clone());
+		}
+	}
+}
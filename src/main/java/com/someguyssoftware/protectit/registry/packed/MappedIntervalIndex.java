@@ -0,0 +1,504 @@
+/*
+ * This file is part of  Protect It.
+ * Copyright (c) 2023 Mark Gottschling (gottsch)
+ *
+ * All rights reserved.
+ *
+ * Protect It is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Protect It is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Protect It.  If not, see <http://www.gnu.org/licenses/lgpl>.
+ */
+package com.someguyssoftware.protectit.registry.packed;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import com.someguyssoftware.protectit.claim.Property;
+import com.someguyssoftware.protectit.registry.IProtectionIndex;
+import com.someguyssoftware.protectit.registry.bst.Interval;
+
+import mod.gottsch.forge.gottschcore.spatial.ICoords;
+
+/**
+ * A read-only interval index over a memory-mapped image file, so a large index is not rebuilt on startup.
+ * The claims themselves are still decoded from their region files, the image only saves sorting and building the index.
+ * The image holds the same sorted implicit tree as {@link PackedIntervalIndex}, with each row's claim uuid
+ * in place of the owner id, which is not stable across restarts. Offsets are row numbers, so the image is position-independent.
+ * <p>
+ * Queries run against the mapped rows, and a row's Interval is created from its claim the first time the row is returned.
+ * The first mutation copies every row into the target index, ie. the configured index type, and hands the target
+ * to the owner, which replaces this index with it.
+ * <p>
+ * The mapping is only released by garbage collection, and a mapped file can't be replaced on some platforms,
+ * so an image file is never overwritten. Each image is written to a new file instead.
+ *
+ * @author Mark Gottschling on Mar 11, 2023
+ *
+ */
+public class MappedIntervalIndex implements IProtectionIndex {
+	private static final int MAGIC = 0x50494931; // PII1
+	private static final int VERSION = 1;
+	// magic, version, row count
+	private static final int HEADER_BYTES = 3 * Integer.BYTES;
+
+	private static final int MIN_X = 0;
+	private static final int MAX_X = 1;
+	private static final int MIN_Z = 2;
+	private static final int MAX_Z = 3;
+	private static final int MIN_Y = 4;
+	private static final int MAX_Y = 5;
+	private static final int SUB_MAX_X = 6;
+	// claim uuid, most significant bits first, as 4 ints
+	private static final int CLAIM_UUID = 7;
+	private static final int STRIDE = 11;
+
+	private static final Comparator<Property> ROW_ORDER = Comparator
+			.<Property>comparingInt(claim -> claim.getBox().getMinCoords().getX())
+			.thenComparingInt(claim -> claim.getBox().getMaxCoords().getX())
+			.thenComparingInt(claim -> claim.getBox().getMinCoords().getZ())
+			.thenComparingInt(claim -> claim.getBox().getMaxCoords().getZ())
+			.thenComparingInt(claim -> claim.getBox().getMinCoords().getY())
+			.thenComparingInt(claim -> claim.getBox().getMaxCoords().getY());
+
+	private final int count;
+	// the mapped rows, or null once the image has been copied
+	private volatile IntBuffer rows;
+	private final AtomicReferenceArray<Interval> intervals;
+	// the claim of each row, as matched on load
+	private Property[] claims;
+	private Function<Property, Interval> toInterval;
+	private IProtectionIndex target;
+	// called with the target once the image has been copied
+	private Consumer<IProtectionIndex> onCopy;
+	// the index that handles all calls once the image has been copied
+	private volatile IProtectionIndex copy;
+
+	private MappedIntervalIndex(IntBuffer rows, int count, AtomicReferenceArray<Interval> intervals) {
+		this.rows = rows;
+		this.count = count;
+		this.intervals = intervals;
+	}
+
+	/**
+	 * Map the image file.
+	 * @param path
+	 * @return
+	 * @throws IOException if the file is missing, of an unknown version or truncated
+	 */
+	public static MappedIntervalIndex open(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.BIG_ENDIAN);
+			if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC || buffer.getInt(Integer.BYTES) != VERSION) {
+				throw new IOException("unknown index image format");
+			}
+			int count = buffer.getInt(2 * Integer.BYTES);
+			if (count < 0 || buffer.capacity() != HEADER_BYTES + (long)count * STRIDE * Integer.BYTES) {
+				throw new IOException("index image is truncated");
+			}
+			buffer.position(HEADER_BYTES);
+			return new MappedIntervalIndex(buffer.slice().asIntBuffer(), count, new AtomicReferenceArray<>(count));
+		}
+	}
+
+	/**
+	 * Write an image of the claims to a new file. An existing image is never replaced, as it may still be mapped.
+	 * @param path
+	 * @param claims
+	 * @throws IOException
+	 */
+	public static void write(Path path, Collection<Property> claims) throws IOException {
+		List<Property> sorted = new ArrayList<>(claims);
+		sorted.sort(ROW_ORDER);
+		int[] data = new int[sorted.size() * STRIDE];
+		for (int row = 0; row < sorted.size(); row++) {
+			Property claim = sorted.get(row);
+			ICoords min = claim.getBox().getMinCoords();
+			ICoords max = claim.getBox().getMaxCoords();
+			int offset = row * STRIDE;
+			data[offset + MIN_X] = min.getX();
+			data[offset + MAX_X] = max.getX();
+			data[offset + MIN_Z] = min.getZ();
+			data[offset + MAX_Z] = max.getZ();
+			data[offset + MIN_Y] = min.getY();
+			data[offset + MAX_Y] = max.getY();
+			long msb = claim.getUuid().getMostSignificantBits();
+			long lsb = claim.getUuid().getLeastSignificantBits();
+			data[offset + CLAIM_UUID] = (int)(msb >>> 32);
+			data[offset + CLAIM_UUID + 1] = (int)msb;
+			data[offset + CLAIM_UUID + 2] = (int)(lsb >>> 32);
+			data[offset + CLAIM_UUID + 3] = (int)lsb;
+		}
+		computeSubMax(data, 0, sorted.size());
+
+		ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + data.length * Integer.BYTES).order(ByteOrder.BIG_ENDIAN);
+		buffer.putInt(MAGIC).putInt(VERSION).putInt(sorted.size());
+		buffer.asIntBuffer().put(data);
+		buffer.rewind();
+
+		Path tempPath = path.resolveSibling(path.getFileName() + ".tmp");
+		try (FileChannel channel = FileChannel.open(tempPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			channel.force(false);
+		}
+		Files.move(tempPath, path);
+	}
+
+	/**
+	 * Whether the image holds exactly the claims, with the same bounds.
+	 * The matched claims are kept, so rows are resolved without the registry's maps, which change before the index does.
+	 * @param claims claims by uuid
+	 * @param size the number of claims
+	 * @return
+	 */
+	public boolean matches(Function<UUID, Property> claims, int size) {
+		if (size != count) {
+			return false;
+		}
+		IntBuffer rows = this.rows;
+		Property[] matched = new Property[count];
+		for (int row = 0; row < count; row++) {
+			Property claim = claims.apply(getUuid(rows, row));
+			if (claim == null) {
+				return false;
+			}
+			matched[row] = claim;
+			int offset = row * STRIDE;
+			ICoords min = claim.getBox().getMinCoords();
+			ICoords max = claim.getBox().getMaxCoords();
+			if (rows.get(offset + MIN_X) != min.getX() || rows.get(offset + MAX_X) != max.getX()
+					|| rows.get(offset + MIN_Z) != min.getZ() || rows.get(offset + MAX_Z) != max.getZ()
+					|| rows.get(offset + MIN_Y) != min.getY() || rows.get(offset + MAX_Y) != max.getY()) {
+				return false;
+			}
+		}
+		this.claims = matched;
+		return true;
+	}
+
+	/**
+	 * Call after the image {@link #matches(Function, int)} the claims.
+	 * @param toInterval creates the interval of a claim
+	 * @param target the empty index that the image is copied into on the first mutation
+	 * @param onCopy called with the target once the image has been copied, ie. to replace this index with it
+	 * @return this
+	 */
+	public MappedIntervalIndex bind(Function<Property, Interval> toInterval, IProtectionIndex target, Consumer<IProtectionIndex> onCopy) {
+		this.toInterval = toInterval;
+		this.target = target;
+		this.onCopy = onCopy;
+		return this;
+	}
+
+	/**
+	 * Copy the image into the target index, so it can be mutated.
+	 * @return the target index
+	 */
+	private synchronized IProtectionIndex copy() {
+		if (copy == null) {
+			List<Interval> list = new ArrayList<>(count);
+			for (int row = 0; row < count; row++) {
+				list.add(getInterval(row));
+			}
+			target.build(list);
+			copy = target;
+			// readers switch to the copy
+			this.rows = null;
+			if (onCopy != null) {
+				onCopy.accept(target);
+			}
+		}
+		return copy;
+	}
+
+	@Override
+	public void insert(Interval interval) {
+		copy().insert(interval);
+	}
+
+	@Override
+	public void delete(Interval target) {
+		copy().delete(target);
+	}
+
+	@Override
+	public void deleteAll(Collection<Interval> targets) {
+		copy().deleteAll(targets);
+	}
+
+	@Override
+	public void build(Collection<Interval> intervals) {
+		copy().build(intervals);
+	}
+
+	@Override
+	public void clear() {
+		copy().clear();
+	}
+
+	@Override
+	public boolean contains(Interval target) {
+		IntBuffer rows = this.rows;
+		if (rows == null) {
+			return copy.contains(target);
+		}
+		int lo = 0;
+		int hi = count - 1;
+		while (lo <= hi) {
+			int mid = (lo + hi) >>> 1;
+			int cmp = compare(rows, mid, target);
+			if (cmp == 0) {
+				return true;
+			}
+			if (cmp < 0) {
+				lo = mid + 1;
+			}
+			else {
+				hi = mid - 1;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public Interval getContaining(int x, int y, int z) {
+		IntBuffer rows = this.rows;
+		if (rows == null) {
+			return copy.getContaining(x, y, z);
+		}
+		int row = getContaining(rows, 0, count, x, y, z);
+		return row < 0 ? null : getInterval(row);
+	}
+
+	/**
+	 * Point search of the implicit tree over rows [lo, hi), same as {@link PackedIntervalIndex}.
+	 * @return the row that contains the point, or -1
+	 */
+	private static int getContaining(IntBuffer data, int lo, int hi, int x, int y, int z) {
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			int offset = mid * STRIDE;
+			if (x > data.get(offset + SUB_MAX_X)) {
+				return -1;
+			}
+			int row = getContaining(data, lo, mid, x, y, z);
+			if (row >= 0) {
+				return row;
+			}
+			if (x >= data.get(offset + MIN_X) && x <= data.get(offset + MAX_X)
+					&& z >= data.get(offset + MIN_Z) && z <= data.get(offset + MAX_Z)
+					&& y >= data.get(offset + MIN_Y) && y <= data.get(offset + MAX_Y)) {
+				return mid;
+			}
+			if (x < data.get(offset + MIN_X)) {
+				return -1;
+			}
+			lo = mid + 1;
+		}
+		return -1;
+	}
+
+	@Override
+	public List<Interval> getOverlapping(Interval testInterval, boolean findFast, boolean includeBorder) {
+		IntBuffer rows = this.rows;
+		if (rows == null) {
+			return copy.getOverlapping(testInterval, findFast, includeBorder);
+		}
+		List<Interval> results = new ArrayList<>();
+		checkOverlap(rows, 0, count, testInterval.getStart(), testInterval.getEnd(), testInterval.getStartY(), testInterval.getEndY(),
+				testInterval.getStartZ(), testInterval.getEndZ(), results, findFast, includeBorder);
+		return results;
+	}
+
+	/**
+	 * Overlap search of the implicit tree over rows [lo, hi), same as {@link PackedIntervalIndex}.
+	 * @return whether an overlap was found
+	 */
+	private boolean checkOverlap(IntBuffer data, int lo, int hi, int x1, int x2, int y1, int y2, int z1, int z2,
+			List<Interval> results, boolean findFast, boolean includeBorder) {
+		boolean isFound = false;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			int offset = mid * STRIDE;
+			if (x1 > data.get(offset + SUB_MAX_X)) {
+				return isFound;
+			}
+			if (checkOverlap(data, lo, mid, x1, x2, y1, y2, z1, z2, results, findFast, includeBorder)) {
+				isFound = true;
+				if (findFast) {
+					return true;
+				}
+			}
+			if (overlaps(data, offset, x1, x2, y1, y2, z1, z2, includeBorder)) {
+				results.add(getInterval(mid));
+				isFound = true;
+				if (findFast) {
+					return true;
+				}
+			}
+			if (data.get(offset + MIN_X) > x2) {
+				return isFound;
+			}
+			lo = mid + 1;
+		}
+		return isFound;
+	}
+
+	private static boolean overlaps(IntBuffer data, int offset, int x1, int x2, int y1, int y2, int z1, int z2, boolean includeBorder) {
+		if (includeBorder) {
+			return data.get(offset + MIN_X) <= x2 && data.get(offset + MAX_X) >= x1
+					&& data.get(offset + MIN_Z) <= z2 && data.get(offset + MAX_Z) >= z1
+					&& data.get(offset + MIN_Y) <= y2 && data.get(offset + MAX_Y) >= y1;
+		}
+		return data.get(offset + MIN_X) < x2 && data.get(offset + MAX_X) > x1
+				&& data.get(offset + MIN_Z) < z2 && data.get(offset + MAX_Z) > z1
+				&& data.get(offset + MIN_Y) < y2 && data.get(offset + MAX_Y) > y1;
+	}
+
+	@Override
+	public boolean find(Predicate<Interval> predicate, List<Interval> intervals, boolean findFirst) {
+		IntBuffer rows = this.rows;
+		if (rows == null) {
+			return copy.find(predicate, intervals, findFirst);
+		}
+		boolean isFound = false;
+		for (int row = 0; row < count; row++) {
+			Interval interval = getInterval(row);
+			if (predicate.test(interval)) {
+				intervals.add(interval);
+				isFound = true;
+				if (findFirst) {
+					return true;
+				}
+			}
+		}
+		return isFound;
+	}
+
+	@Override
+	public void list(List<Interval> intervals) {
+		IntBuffer rows = this.rows;
+		if (rows == null) {
+			copy.list(intervals);
+			return;
+		}
+		for (int row = 0; row < count; row++) {
+			intervals.add(getInterval(row));
+		}
+	}
+
+	@Override
+	public List<String> toStringList() {
+		List<Interval> list = new ArrayList<>();
+		list(list);
+		List<String> display = new ArrayList<>();
+		list.forEach(element -> {
+			display.add(String.format("[%s] -> [%s]: owner -> %s (%s)", element.getCoords1().toShortString(), element.getCoords2().toShortString(), element.getData().getOwner().getName(), element.getData().getOwner().getUuid()));
+		});
+		return display;
+	}
+
+	/**
+	 * The mapped rows are never modified, so a snapshot is a new view of the same rows.
+	 * The view is not affected by this index being copied, and copies itself into a new packed index if it is mutated.
+	 */
+	@Override
+	public IProtectionIndex snapshot() {
+		IntBuffer rows = this.rows;
+		if (rows == null) {
+			return copy.snapshot();
+		}
+		MappedIntervalIndex view = new MappedIntervalIndex(rows, count, intervals);
+		view.claims = claims;
+		return view.bind(toInterval, new PackedIntervalIndex(), null);
+	}
+
+	@Override
+	public int size() {
+		return rows == null ? copy.size() : count;
+	}
+
+	/*
+	 * row helpers
+	 */
+	private Interval getInterval(int row) {
+		Interval interval = intervals.get(row);
+		if (interval == null) {
+			interval = toInterval.apply(claims[row]);
+			if (!intervals.compareAndSet(row, null, interval)) {
+				interval = intervals.get(row);
+			}
+		}
+		return interval;
+	}
+
+	private static UUID getUuid(IntBuffer data, int row) {
+		int offset = row * STRIDE + CLAIM_UUID;
+		long msb = ((long)data.get(offset) << 32) | (data.get(offset + 1) & 0xFFFFFFFFL);
+		long lsb = ((long)data.get(offset + 2) << 32) | (data.get(offset + 3) & 0xFFFFFFFFL);
+		return new UUID(msb, lsb);
+	}
+
+	/**
+	 * Compare a row's bounds to the interval, in {@link Interval#compareTo(Interval)} order.
+	 */
+	private static int compare(IntBuffer data, int row, Interval interval) {
+		int offset = row * STRIDE;
+		int cmp = Integer.compare(data.get(offset + MIN_X), interval.getStart());
+		if (cmp == 0) {
+			cmp = Integer.compare(data.get(offset + MAX_X), interval.getEnd());
+		}
+		if (cmp == 0) {
+			cmp = Integer.compare(data.get(offset + MIN_Z), interval.getStartZ());
+		}
+		if (cmp == 0) {
+			cmp = Integer.compare(data.get(offset + MAX_Z), interval.getEndZ());
+		}
+		if (cmp == 0) {
+			cmp = Integer.compare(data.get(offset + MIN_Y), interval.getStartY());
+		}
+		if (cmp == 0) {
+			cmp = Integer.compare(data.get(offset + MAX_Y), interval.getEndY());
+		}
+		return cmp;
+	}
+
+	/**
+	 * Compute the subtree max x-axis extents of the implicit tree over rows [lo, hi).
+	 * @return the max x-axis extent of the range
+	 */
+	private static int computeSubMax(int[] data, int lo, int hi) {
+		if (lo >= hi) {
+			return Integer.MIN_VALUE;
+		}
+		int mid = (lo + hi) >>> 1;
+		int max = Math.max(data[mid * STRIDE + MAX_X], Math.max(computeSubMax(data, lo, mid), computeSubMax(data, mid + 1, hi)));
+		data[mid * STRIDE + SUB_MAX_X] = max;
+		return max;
+	}
+}
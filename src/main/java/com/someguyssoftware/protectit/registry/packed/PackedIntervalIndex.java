@@ -0,0 +1,538 @@
+/*
+ * This file is part of  Protect It.
+ * Copyright (c) 2023 Mark Gottschling (gottsch)
+ *
+ * All rights reserved.
+ *
+ * Protect It is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Protect It is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with Protect It.  If not, see <http://www.gnu.org/licenses/lgpl>.
+ */
+package com.someguyssoftware.protectit.registry.packed;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import com.someguyssoftware.protectit.registry.IProtectionIndex;
+import com.someguyssoftware.protectit.registry.PlayerDictionary;
+import com.someguyssoftware.protectit.registry.bst.Interval;
+
+/**
+ * An interval index that stores claim geometry in a single flat int[] with a fixed stride per claim:
+ * the bounds in {@link Interval#compareTo(Interval)} order, the subtree max x-axis extent, and the owner's player dictionary id.
+ * The row number is the claim index into a parallel Interval[] that is only read to return results.
+ * <p>
+ * The base rows are sorted and searched as an implicit balanced tree (the root of any row range is
+ * its midpoint), so traversal touches contiguous memory and never calls through ICoords.
+ * New claims are appended to a small unsorted tail that is merged into the base once it grows
+ * past sqrt(n) rows.
+ * <p>
+ * The arrays are never modified once published. Writers build new arrays and publish them through
+ * a volatile reference, so readers do not lock.
+ *
+ * @author Mark Gottschling on Mar 5, 2023
+ *
+ */
+public class PackedIntervalIndex implements IProtectionIndex {
+	private static final int MIN_X = 0;
+	private static final int MAX_X = 1;
+	private static final int MIN_Z = 2;
+	private static final int MAX_Z = 3;
+	private static final int MIN_Y = 4;
+	private static final int MAX_Y = 5;
+	private static final int SUB_MAX_X = 6;
+	private static final int OWNER = 7;
+	private static final int STRIDE = 8;
+
+	private static final int MIN_TAIL = 32;
+
+	private volatile Layout layout;
+
+	public PackedIntervalIndex() {
+		this(Layout.EMPTY);
+	}
+
+	private PackedIntervalIndex(Layout layout) {
+		this.layout = layout;
+	}
+
+	@Override
+	public synchronized void insert(Interval interval) {
+		Layout current = layout;
+		int count = current.tailIntervals.length;
+		int[] tail = Arrays.copyOf(current.tail, (count + 1) * STRIDE);
+		Interval[] tailIntervals = Arrays.copyOf(current.tailIntervals, count + 1);
+		pack(interval, tail, count);
+		tailIntervals[count] = interval;
+
+		if (tailIntervals.length > Math.max(MIN_TAIL, (int)Math.sqrt(current.baseIntervals.length))) {
+			layout = merge(current.base, current.baseIntervals, tail, tailIntervals);
+		}
+		else {
+			layout = new Layout(current.base, current.baseIntervals, tail, tailIntervals);
+		}
+	}
+
+	/**
+	 * Requires an exact match of intervals.
+	 * @param target
+	 */
+	@Override
+	public synchronized void delete(Interval target) {
+		Layout current = layout;
+		int row = findTail(current, target);
+		if (row >= 0) {
+			layout = new Layout(current.base, current.baseIntervals,
+					removeRow(current.tail, row), removeRow(current.tailIntervals, row));
+			return;
+		}
+		row = findBase(current, target);
+		if (row >= 0) {
+			int[] base = removeRow(current.base, row);
+			Interval[] baseIntervals = removeRow(current.baseIntervals, row);
+			computeSubMax(base, 0, baseIntervals.length);
+			layout = new Layout(base, baseIntervals, current.tail, current.tailIntervals);
+		}
+	}
+
+	/**
+	 * Sorts the intervals once and packs them straight into the base, with an empty tail.
+	 * @param intervals
+	 */
+	@Override
+	public synchronized void build(Collection<Interval> intervals) {
+		Interval[] sorted = intervals.toArray(new Interval[0]);
+		Arrays.sort(sorted);
+		int[] base = new int[sorted.length * STRIDE];
+		for (int row = 0; row < sorted.length; row++) {
+			pack(sorted[row], base, row);
+		}
+		computeSubMax(base, 0, sorted.length);
+		layout = new Layout(base, sorted, Layout.EMPTY.tail, Layout.EMPTY.tailIntervals);
+	}
+
+	/**
+	 * Compacts the base and tail in one pass, so the cost is O(n + k) instead of O(n) per target.
+	 * @param targets
+	 */
+	@Override
+	public synchronized void deleteAll(Collection<Interval> targets) {
+		if (targets.isEmpty()) {
+			return;
+		}
+		Set<Interval> set = new HashSet<>(targets);
+		Layout current = layout;
+
+		int[] base = new int[current.base.length];
+		Interval[] baseIntervals = new Interval[current.baseIntervals.length];
+		int baseCount = compact(current.base, current.baseIntervals, set, base, baseIntervals);
+		int[] tail = new int[current.tail.length];
+		Interval[] tailIntervals = new Interval[current.tailIntervals.length];
+		int tailCount = compact(current.tail, current.tailIntervals, set, tail, tailIntervals);
+
+		if (baseCount == current.baseIntervals.length && tailCount == current.tailIntervals.length) {
+			return;
+		}
+		base = Arrays.copyOf(base, baseCount * STRIDE);
+		computeSubMax(base, 0, baseCount);
+		layout = new Layout(base, Arrays.copyOf(baseIntervals, baseCount),
+				Arrays.copyOf(tail, tailCount * STRIDE), Arrays.copyOf(tailIntervals, tailCount));
+	}
+
+	/**
+	 * Copy the rows that are not in the removal set, preserving order.
+	 * @return the number of rows copied
+	 */
+	private static int compact(int[] data, Interval[] intervals, Set<Interval> removals, int[] resultData, Interval[] resultIntervals) {
+		int count = 0;
+		for (int row = 0; row < intervals.length; row++) {
+			if (!removals.contains(intervals[row])) {
+				System.arraycopy(data, row * STRIDE, resultData, count * STRIDE, STRIDE);
+				resultIntervals[count++] = intervals[row];
+			}
+		}
+		return count;
+	}
+
+	@Override
+	public boolean contains(Interval target) {
+		Layout current = layout;
+		return findTail(current, target) >= 0 || findBase(current, target) >= 0;
+	}
+
+	@Override
+	public Interval getContaining(int x, int y, int z) {
+		Layout current = layout;
+		int row = getContaining(current.base, 0, current.baseIntervals.length, x, y, z);
+		if (row >= 0) {
+			return current.baseIntervals[row];
+		}
+		int[] tail = current.tail;
+		for (row = 0; row < current.tailIntervals.length; row++) {
+			if (contains(tail, row, x, y, z)) {
+				return current.tailIntervals[row];
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Reads the owner from the row, so the interval is not touched.
+	 */
+	@Override
+	public int getOwnerContaining(int x, int y, int z) {
+		Layout current = layout;
+		int row = getContaining(current.base, 0, current.baseIntervals.length, x, y, z);
+		if (row >= 0) {
+			return current.base[row * STRIDE + OWNER];
+		}
+		int[] tail = current.tail;
+		for (row = 0; row < current.tailIntervals.length; row++) {
+			if (contains(tail, row, x, y, z)) {
+				return tail[row * STRIDE + OWNER];
+			}
+		}
+		return NOT_CONTAINED;
+	}
+
+	/**
+	 * Allocation-free point search of the implicit tree over rows [lo, hi).
+	 * @return the row that contains the point, or -1
+	 */
+	private static int getContaining(int[] data, int lo, int hi, int x, int y, int z) {
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			int offset = mid * STRIDE;
+			if (x > data[offset + SUB_MAX_X]) {
+				return -1;
+			}
+			int row = getContaining(data, lo, mid, x, y, z);
+			if (row >= 0) {
+				return row;
+			}
+			if (contains(data, mid, x, y, z)) {
+				return mid;
+			}
+			// all rows to the right start at or after this row
+			if (x < data[offset + MIN_X]) {
+				return -1;
+			}
+			lo = mid + 1;
+		}
+		return -1;
+	}
+
+	@Override
+	public List<Interval> getOverlapping(Interval testInterval, boolean findFast, boolean includeBorder) {
+		Layout current = layout;
+		List<Interval> results = new ArrayList<>();
+		int x1 = testInterval.getStart();
+		int x2 = testInterval.getEnd();
+		int y1 = testInterval.getStartY();
+		int y2 = testInterval.getEndY();
+		int z1 = testInterval.getStartZ();
+		int z2 = testInterval.getEndZ();
+
+		if (checkOverlap(current.base, current.baseIntervals, 0, current.baseIntervals.length, x1, x2, y1, y2, z1, z2, results, findFast, includeBorder) && findFast) {
+			return results;
+		}
+		for (int row = 0; row < current.tailIntervals.length; row++) {
+			if (overlaps(current.tail, row, x1, x2, y1, y2, z1, z2, includeBorder)) {
+				results.add(current.tailIntervals[row]);
+				if (findFast) {
+					return results;
+				}
+			}
+		}
+		return results;
+	}
+
+	/**
+	 * Overlap search of the implicit tree over rows [lo, hi). Subtrees are pruned using their max x-axis extent,
+	 * and right subtrees are skipped once the row start is past the end of the test area.
+	 * @return whether an overlap was found
+	 */
+	private static boolean checkOverlap(int[] data, Interval[] intervals, int lo, int hi, int x1, int x2, int y1, int y2, int z1, int z2,
+			List<Interval> results, boolean findFast, boolean includeBorder) {
+		boolean isFound = false;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			int offset = mid * STRIDE;
+			if (x1 > data[offset + SUB_MAX_X]) {
+				return isFound;
+			}
+			if (checkOverlap(data, intervals, lo, mid, x1, x2, y1, y2, z1, z2, results, findFast, includeBorder)) {
+				isFound = true;
+				if (findFast) {
+					return true;
+				}
+			}
+			if (overlaps(data, mid, x1, x2, y1, y2, z1, z2, includeBorder)) {
+				results.add(intervals[mid]);
+				isFound = true;
+				if (findFast) {
+					return true;
+				}
+			}
+			if (data[offset + MIN_X] > x2) {
+				return isFound;
+			}
+			lo = mid + 1;
+		}
+		return isFound;
+	}
+
+	@Override
+	public boolean find(Predicate<Interval> predicate, List<Interval> intervals, boolean findFirst) {
+		Layout current = layout;
+		boolean isFound = false;
+		for (Interval[] rows : new Interval[][] {current.baseIntervals, current.tailIntervals}) {
+			for (Interval interval : rows) {
+				if (predicate.test(interval)) {
+					intervals.add(interval);
+					isFound = true;
+					if (findFirst) {
+						return true;
+					}
+				}
+			}
+		}
+		return isFound;
+	}
+
+	@Override
+	public void list(List<Interval> intervals) {
+		Layout current = layout;
+		intervals.addAll(Arrays.asList(current.baseIntervals));
+		intervals.addAll(Arrays.asList(current.tailIntervals));
+	}
+
+	@Override
+	public List<String> toStringList() {
+		List<Interval> list = new ArrayList<>();
+		list(list);
+		List<String> display = new ArrayList<>();
+		list.forEach(element -> {
+			display.add(String.format("[%s] -> [%s]: owner -> %s (%s)", element.getCoords1().toShortString(), element.getCoords2().toShortString(), element.getData().getOwner().getName(), element.getData().getOwner().getUuid()));
+		});
+		return display;
+	}
+
+	@Override
+	public synchronized void clear() {
+		layout = Layout.EMPTY;
+	}
+
+	@Override
+	public int size() {
+		return layout.size();
+	}
+
+	/**
+	 * O(1), as the published arrays are never modified.
+	 */
+	@Override
+	public PackedIntervalIndex snapshot() {
+		return new PackedIntervalIndex(layout);
+	}
+
+	/*
+	 * row helpers
+	 */
+	private static void pack(Interval interval, int[] data, int row) {
+		int offset = row * STRIDE;
+		data[offset + MIN_X] = interval.getStart();
+		data[offset + MAX_X] = interval.getEnd();
+		data[offset + MIN_Z] = interval.getStartZ();
+		data[offset + MAX_Z] = interval.getEndZ();
+		data[offset + MIN_Y] = interval.getStartY();
+		data[offset + MAX_Y] = interval.getEndY();
+		data[offset + SUB_MAX_X] = interval.getEnd();
+		data[offset + OWNER] = interval.getData() == null ? PlayerDictionary.NO_ID : interval.getData().getOwner().getId();
+	}
+
+	private static boolean contains(int[] data, int row, int x, int y, int z) {
+		int offset = row * STRIDE;
+		return x >= data[offset + MIN_X] && x <= data[offset + MAX_X]
+				&& z >= data[offset + MIN_Z] && z <= data[offset + MAX_Z]
+				&& y >= data[offset + MIN_Y] && y <= data[offset + MAX_Y];
+	}
+
+	private static boolean overlaps(int[] data, int row, int x1, int x2, int y1, int y2, int z1, int z2, boolean includeBorder) {
+		int offset = row * STRIDE;
+		if (includeBorder) {
+			return data[offset + MIN_X] <= x2 && data[offset + MAX_X] >= x1
+					&& data[offset + MIN_Z] <= z2 && data[offset + MAX_Z] >= z1
+					&& data[offset + MIN_Y] <= y2 && data[offset + MAX_Y] >= y1;
+		}
+		return data[offset + MIN_X] < x2 && data[offset + MAX_X] > x1
+				&& data[offset + MIN_Z] < z2 && data[offset + MAX_Z] > z1
+				&& data[offset + MIN_Y] < y2 && data[offset + MAX_Y] > y1;
+	}
+
+	/**
+	 * Lexicographic compare of two rows' bounds, in Interval compareTo order.
+	 */
+	private static int compare(int[] a, int rowA, int[] b, int rowB) {
+		int offsetA = rowA * STRIDE;
+		int offsetB = rowB * STRIDE;
+		for (int i = MIN_X; i <= MAX_Y; i++) {
+			if (a[offsetA + i] != b[offsetB + i]) {
+				return a[offsetA + i] < b[offsetB + i] ? -1 : 1;
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Compare of a row's bounds to the target's, in Interval compareTo order.
+	 */
+	private static int compare(int[] data, int row, Interval target) {
+		int offset = row * STRIDE;
+		int cmp = Integer.compare(data[offset + MIN_X], target.getStart());
+		if (cmp == 0) {
+			cmp = Integer.compare(data[offset + MAX_X], target.getEnd());
+		}
+		if (cmp == 0) {
+			cmp = Integer.compare(data[offset + MIN_Z], target.getStartZ());
+		}
+		if (cmp == 0) {
+			cmp = Integer.compare(data[offset + MAX_Z], target.getEndZ());
+		}
+		if (cmp == 0) {
+			cmp = Integer.compare(data[offset + MIN_Y], target.getStartY());
+		}
+		if (cmp == 0) {
+			cmp = Integer.compare(data[offset + MAX_Y], target.getEndY());
+		}
+		return cmp;
+	}
+
+	private static int findTail(Layout layout, Interval target) {
+		for (int i = 0; i < layout.tailIntervals.length; i++) {
+			if (compare(layout.tail, i, target) == 0) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static int findBase(Layout layout, Interval target) {
+		int lo = 0;
+		int hi = layout.baseIntervals.length - 1;
+		while (lo <= hi) {
+			int mid = (lo + hi) >>> 1;
+			int cmp = compare(layout.base, mid, target);
+			if (cmp == 0) {
+				return mid;
+			}
+			if (cmp < 0) {
+				lo = mid + 1;
+			}
+			else {
+				hi = mid - 1;
+			}
+		}
+		return -1;
+	}
+
+	private static int[] removeRow(int[] data, int row) {
+		int[] result = new int[data.length - STRIDE];
+		System.arraycopy(data, 0, result, 0, row * STRIDE);
+		System.arraycopy(data, (row + 1) * STRIDE, result, row * STRIDE, data.length - (row + 1) * STRIDE);
+		return result;
+	}
+
+	private static Interval[] removeRow(Interval[] intervals, int row) {
+		Interval[] result = new Interval[intervals.length - 1];
+		System.arraycopy(intervals, 0, result, 0, row);
+		System.arraycopy(intervals, row + 1, result, row, intervals.length - row - 1);
+		return result;
+	}
+
+	/**
+	 * Sort the tail and merge it into the base.
+	 */
+	private static Layout merge(int[] base, Interval[] baseIntervals, int[] tail, Interval[] tailIntervals) {
+		// insertion sort of the small tail, by row index
+		int[] order = new int[tailIntervals.length];
+		for (int i = 0; i < order.length; i++) {
+			int row = i;
+			int j = i - 1;
+			while (j >= 0 && compare(tail, order[j], tail, row) > 0) {
+				order[j + 1] = order[j];
+				j--;
+			}
+			order[j + 1] = row;
+		}
+
+		int count = baseIntervals.length + tailIntervals.length;
+		int[] data = new int[count * STRIDE];
+		Interval[] intervals = new Interval[count];
+		int b = 0;
+		int t = 0;
+		for (int row = 0; row < count; row++) {
+			if (t >= order.length || (b < baseIntervals.length && compare(base, b, tail, order[t]) <= 0)) {
+				System.arraycopy(base, b * STRIDE, data, row * STRIDE, STRIDE);
+				intervals[row] = baseIntervals[b++];
+			}
+			else {
+				System.arraycopy(tail, order[t] * STRIDE, data, row * STRIDE, STRIDE);
+				intervals[row] = tailIntervals[order[t++]];
+			}
+		}
+		computeSubMax(data, 0, count);
+		return new Layout(data, intervals, Layout.EMPTY.tail, Layout.EMPTY.tailIntervals);
+	}
+
+	/**
+	 * Recompute the subtree max x-axis extents of the implicit tree over rows [lo, hi).
+	 * @return the max x-axis extent of the range
+	 */
+	private static int computeSubMax(int[] data, int lo, int hi) {
+		if (lo >= hi) {
+			return Integer.MIN_VALUE;
+		}
+		int mid = (lo + hi) >>> 1;
+		int max = Math.max(data[mid * STRIDE + MAX_X], Math.max(computeSubMax(data, lo, mid), computeSubMax(data, mid + 1, hi)));
+		data[mid * STRIDE + SUB_MAX_X] = max;
+		return max;
+	}
+
+	/**
+	 * An immutable version of the index.
+	 */
+	private static final class Layout {
+		static final Layout EMPTY = new Layout(new int[0], new Interval[0], new int[0], new Interval[0]);
+
+		final int[] base;
+		final Interval[] baseIntervals;
+		final int[] tail;
+		final Interval[] tailIntervals;
+
+		Layout(int[] base, Interval[] baseIntervals, int[] tail, Interval[] tailIntervals) {
+			this.base = base;
+			this.baseIntervals = baseIntervals;
+			this.tail = tail;
+			this.tailIntervals = tailIntervals;
+		}
+
+		int size() {
+			return baseIntervals.length + tailIntervals.length;
+		}
+	}
+}